@@ -0,0 +1,117 @@
+/*
+ * Copyright 2014 Computing Distribution Group Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.groupcdg.maven.tidesdk;
+
+import org.apache.maven.model.Developer;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Organization;
+import org.apache.maven.project.MavenProject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of writing the manifest and tiapp.xml descriptors.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DescriptorBenchmark {
+
+	private GenerateMojo mojo;
+
+	private Display display;
+
+	private Date timestamp;
+
+	private ByteArrayOutputStream buffer;
+
+	private DescriptorWriter writer;
+
+
+
+	@Setup
+	public void configure() {
+		Model model = new Model();
+		model.setGroupId("com.groupcdg.maven.bench");
+		model.setArtifactId("descriptor");
+		model.setVersion("1.0.0");
+		model.setName("Descriptor Benchmark");
+		model.setUrl("http://groupcdg.com/bench");
+		Organization organization = new Organization();
+		organization.setName("Computing Distribution Group Ltd.");
+		model.setOrganization(organization);
+		model.addDeveloper(new Developer());
+
+		display = new Display();
+		display.setWidth(1024);
+		display.setHeight(768);
+		display.setResizable(false);
+
+		mojo = new GenerateMojo();
+		mojo.setProject(new MavenProject(model));
+		mojo.setName(model.getName());
+		mojo.setSdkVersion("1.3.1-beta");
+		mojo.setIcon("img/icon.png");
+		mojo.setIndex("index.html");
+		mojo.setDisplay(display);
+		timestamp = new Date(1410177600000L);
+		buffer = new ByteArrayOutputStream(4096);
+		writer = new DescriptorWriter(buffer);
+	}
+
+
+
+	@Benchmark
+	public int displayXml() throws IOException {
+		buffer.reset();
+		display.write(writer, "initial", "Descriptor Benchmark", "index.html");
+		writer.flush();
+		return buffer.size();
+	}
+
+	@Benchmark
+	public int manifest() throws IOException {
+		buffer.reset();
+		mojo.writeManifest(writer, timestamp, ModuleDetector.STANDARD_MODULES);
+		writer.flush();
+		return buffer.size();
+	}
+
+	@Benchmark
+	public int tiappXml() throws IOException {
+		buffer.reset();
+		mojo.writeXml(writer, timestamp);
+		writer.flush();
+		return buffer.size();
+	}
+}
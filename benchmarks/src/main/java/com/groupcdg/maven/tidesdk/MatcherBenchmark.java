@@ -0,0 +1,98 @@
+/*
+ * Copyright 2014 Computing Distribution Group Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.groupcdg.maven.tidesdk;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Selection cost of the compiled FileSet matcher, both as a pure in-memory match over
+ * relative paths and as a full directory walk with pruning.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MatcherBenchmark {
+
+	@Param({ "1000", "10000", "100000" })
+	public int files;
+
+	private File webapp;
+
+	private FileSetMatcher matcher;
+
+	private List<String> paths;
+
+
+
+	@Setup(Level.Trial)
+	public void createWebapp() throws IOException {
+		webapp = SyntheticWebapp.create(files);
+		matcher = FileSetMatcher.compile(
+				Arrays.asList("*.html", "**/*.js", "**/*.css", "img*/**/*.png", "i18n*/**"),
+				Arrays.asList("**/vendor*/**", "*.txt", "**/tiles*/**/*.json"));
+
+		Map<String, File> all = new LinkedHashMap<>();
+		GenerateMojo.collect(webapp, "", FileSetMatcher.compile(
+				new ArrayList<String>(), new ArrayList<String>()).root(), all);
+		paths = new ArrayList<>(all.keySet());
+	}
+
+	@TearDown(Level.Trial)
+	public void deleteWebapp() {
+		SyntheticWebapp.delete(webapp);
+	}
+
+
+
+	@Benchmark
+	public int matchPaths() {
+		int matched = 0;
+		for(String path : paths) if(matcher.matches(path)) matched++;
+		return matched;
+	}
+
+	@Benchmark
+	public int walkTree() throws IOException {
+		Map<String, File> selected = new LinkedHashMap<>();
+		GenerateMojo.collect(webapp, "", matcher.root(), selected);
+		return selected.size();
+	}
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2014 Computing Distribution Group Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.groupcdg.maven.tidesdk;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.model.FileSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of staging a synthetic webapp into Resources, both from scratch and as an incremental
+ * no-op run over an already staged tree.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StagingBenchmark {
+
+	@Param({ "1000", "10000", "100000" })
+	public int files;
+
+	@Param({ "copy", "hardlink", "transferTo" })
+	public StagingStrategy strategy;
+
+	@Param({ "0" })
+	public int parallelism;
+
+	private File webapp, work, resources, manifest;
+
+	private Map<String, File> sources;
+
+	private CopyEngine engine;
+
+
+
+	@Setup(Level.Trial)
+	public void createWebapp() throws IOException {
+		webapp = SyntheticWebapp.create(files);
+		work = Files.createTempDirectory("tidesdk-bench-work-").toFile();
+		resources = new File(work, "Resources");
+		manifest = new File(work, "staging.manifest");
+		engine = new CopyEngine(parallelism);
+
+		FileSet fileSet = new FileSet();
+		fileSet.setDirectory(webapp.getAbsolutePath());
+		sources = new LinkedHashMap<>();
+		GenerateMojo.collect(webapp, "", FileSetMatcher.compile(fileSet).root(), sources);
+	}
+
+	@Setup(Level.Iteration)
+	public void prepareResources(BenchmarkParams params) throws IOException {
+		FileUtils.deleteQuietly(resources);
+		FileUtils.deleteQuietly(manifest);
+		if(params.getBenchmark().endsWith(".incrementalNoop")) stager().stage(sources);
+	}
+
+	@TearDown(Level.Trial)
+	public void deleteWebapp() {
+		engine.close();
+		SyntheticWebapp.delete(webapp);
+		SyntheticWebapp.delete(work);
+	}
+
+
+
+	@Benchmark
+	public int fullStage() throws IOException {
+		ResourceStager stager = stager();
+		stager.stage(sources);
+		return stager.getCopied();
+	}
+
+	@Benchmark
+	public int incrementalNoop() throws IOException {
+		ResourceStager stager = stager();
+		stager.stage(sources);
+		return stager.getSkipped();
+	}
+
+
+	private ResourceStager stager() {
+		return new ResourceStager(resources, manifest, engine, strategy, new SyntheticWebapp.QuietLog());
+	}
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2014 Computing Distribution Group Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.groupcdg.maven.tidesdk;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * Deterministic generator of webapp trees shaped like real front-end builds: mostly small text
+ * assets, some medium ones and a few large media files, spread over deeply nested directories.
+ */
+final class SyntheticWebapp {
+
+	static final class QuietLog extends SystemStreamLog {
+
+		@Override
+		public boolean isInfoEnabled() {
+			return false;
+		}
+
+		@Override
+		public void info(CharSequence content) {
+		}
+	}
+
+
+	private static final String[] EXTENSIONS = { "js", "css", "html", "png", "json", "txt" };
+
+	private static final String[] DIRECTORIES = { "js", "css", "img", "lib", "vendor", "i18n", "tiles", "views" };
+
+	private static final int MAX_DEPTH = 8;
+
+	private static final int FILES_PER_DIRECTORY = 32;
+
+
+
+	private SyntheticWebapp() {
+	}
+
+
+
+	static File create(int files) throws IOException {
+		File root = Files.createTempDirectory("tidesdk-bench-" + files + "-").toFile();
+		Random random = new Random(files);
+		byte[] buffer = new byte[512 * 1024];
+
+		File directory = root;
+		for(int i = 0; i < files; i++) {
+			if(i % FILES_PER_DIRECTORY == 0) directory = directory(root, random);
+			File file = new File(directory, "asset" + i + '.' + EXTENSIONS[random.nextInt(EXTENSIONS.length)]);
+			try (OutputStream out = new FileOutputStream(file)) {
+				random.nextBytes(buffer);
+				out.write(buffer, 0, size(random));
+			}
+		}
+		return root;
+	}
+
+	static void delete(File root) {
+		FileUtils.deleteQuietly(root);
+	}
+
+
+
+	private static File directory(File root, Random random) throws IOException {
+		StringBuilder path = new StringBuilder();
+		for(int depth = random.nextInt(MAX_DEPTH) + 1; depth > 0; depth--)
+			path.append(DIRECTORIES[random.nextInt(DIRECTORIES.length)]).append(random.nextInt(4)).append('/');
+		File directory = new File(root, path.toString());
+		if(!directory.isDirectory() && !directory.mkdirs()) throw new IOException("Could not create " + directory);
+		return directory;
+	}
+
+	private static int size(Random random) {
+		int bucket = random.nextInt(100);
+		return bucket < 85 ? 128 + random.nextInt(2 * 1024)
+				: bucket < 99 ? 2 * 1024 + random.nextInt(30 * 1024)
+				: 128 * 1024 + random.nextInt(384 * 1024);
+	}
+}
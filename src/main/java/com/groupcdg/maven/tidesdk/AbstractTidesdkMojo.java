@@ -19,14 +19,23 @@ package com.groupcdg.maven.tidesdk;
 import org.apache.maven.model.FileSet;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
-import org.apache.maven.plugin.logging.Log;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.StringUtils;
 
 import java.io.File;
 import java.io.IOException;
+import java.lang.reflect.Method;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Stream;
 
 public abstract class AbstractTidesdkMojo extends AbstractMojo {
 
@@ -37,9 +46,13 @@ public abstract class AbstractTidesdkMojo extends AbstractMojo {
 		osx("Mac", "python", System.getProperty("user.home") + "/Library/Application Support/TideSDK"),
 		linux("Linux", "python", System.getProperty("user.home") + "/.tidesdk");
 
+		private static volatile OS system;
+
 		public static OS system() throws MojoExecutionException {
+			OS current = system;
+			if(current != null) return current;
 			final String name = System.getProperty("os.name");
-			for(OS os : values()) if(name.startsWith(os.key)) return os;
+			for(OS os : values()) if(name.startsWith(os.key)) return system = os;
 			throw new MojoExecutionException("Unsupported operating system: " + name);
 		}
 
@@ -65,9 +78,13 @@ public abstract class AbstractTidesdkMojo extends AbstractMojo {
 		}
 
 		public String builderCommand(String sdkOverride, String version) {
+			return builderCommand(sdkOverride, version, this);
+		}
+
+		public String builderCommand(String sdkOverride, String version, OS target) {
 			return new StringBuilder(sdkOverride == null ? sdk : sdkOverride)
 					.append(File.separatorChar).append("sdk")
-					.append(File.separatorChar).append(name())
+					.append(File.separatorChar).append(target.name())
 					.append(File.separatorChar).append(version)
 					.append(File.separatorChar).append("tidebuilder.py").toString();
 		}
@@ -76,11 +93,21 @@ public abstract class AbstractTidesdkMojo extends AbstractMojo {
 
 	private static final String LOGS_DIRECTORY = "logs";
 
-	private static final String OUT_LOG_SUFFIX = ".out";
+	private static final String COMMAND_MESSAGE_PREFIX = "Running: ";
+
+	private static final long PUMP_DRAIN_MILLIS = 10000L;
 
-	private static final String ERR_LOG_SUFFIX = ".err";
+	private static final long MEGABYTE = 1024L * 1024L;
 
-	private static final String COMMAND_MESSAGE_PREFIX = "Running: ";
+	private static final String PROCESS_PHASE_PREFIX = "process-";
+
+	private static final String METRICS_DIRECTORY = "metrics";
+
+	private static final String METRICS_SUFFIX = ".json";
+
+	private static final String DAEMON_LOG = "builder-daemon.log";
+
+	private static final File SDK_CACHE = new File(System.getProperty("user.home"), ".tidesdk/maven-plugin-sdk.properties");
 
 
 
@@ -120,7 +147,53 @@ public abstract class AbstractTidesdkMojo extends AbstractMojo {
 	@Parameter(property = "display")
 	private Display display;
 
-	private final Log log = getLog();
+	@Parameter
+	private List<Display> windows;
+
+	@Parameter
+	private List<String> modules;
+
+	@Parameter(property = "detectModules", defaultValue = "false")
+	private boolean detectModules;
+
+	@Parameter
+	private List<RuntimeModule> extraModules;
+
+	@Parameter
+	private List<Property> properties;
+
+	@Parameter(property = "incremental", defaultValue = "false")
+	private boolean incremental;
+
+	@Parameter(property = "parallelism", defaultValue = "0")
+	private int parallelism;
+
+	@Parameter(property = "stagingStrategy", defaultValue = "copy")
+	private StagingStrategy stagingStrategy;
+
+	@Parameter(property = "minify", defaultValue = "false")
+	private boolean minify;
+
+	@Parameter(property = "packResources", defaultValue = "false")
+	private boolean packResources;
+
+	@Parameter
+	private List<String> unpackedResources;
+
+	@Parameter(property = "guid")
+	private String guid;
+
+	@Parameter(property = "outputTimestamp", defaultValue = "${project.build.outputTimestamp}")
+	private String outputTimestamp;
+
+	@Parameter(property = "timeout", defaultValue = "0")
+	private long timeout;
+
+	@Parameter(property = "logSegmentSize", defaultValue = "10")
+	private long logSegmentSize;
+
+	@Parameter(property = "logRetention", defaultValue = "50")
+	private int logRetention;
 
 
 
@@ -164,9 +237,72 @@ public abstract class AbstractTidesdkMojo extends AbstractMojo {
 		this.display = display;
 	}
 
+	public void setWindows(List<Display> windows) {
+		this.windows = windows;
+	}
+
+	public void setModules(List<String> modules) {
+		this.modules = modules;
+	}
+
+	public void setDetectModules(boolean detectModules) {
+		this.detectModules = detectModules;
+	}
+
+	public void setExtraModules(List<RuntimeModule> extraModules) {
+		this.extraModules = extraModules;
+	}
+
+	public void setProperties(List<Property> properties) {
+		this.properties = properties;
+	}
+
+	public void setIncremental(boolean incremental) {
+		this.incremental = incremental;
+	}
+
+	public void setParallelism(int parallelism) {
+		this.parallelism = parallelism;
+	}
+
+	public void setStagingStrategy(StagingStrategy stagingStrategy) {
+		this.stagingStrategy = stagingStrategy;
+	}
+
+	public void setMinify(boolean minify) {
+		this.minify = minify;
+	}
+
+	public void setPackResources(boolean packResources) {
+		this.packResources = packResources;
+	}
+
+	public void setUnpackedResources(List<String> unpackedResources) {
+		this.unpackedResources = unpackedResources;
+	}
+
+	public void setGuid(String guid) {
+		this.guid = guid;
+	}
+
+	public void setOutputTimestamp(String outputTimestamp) {
+		this.outputTimestamp = outputTimestamp;
+	}
+
+	public void setTimeout(long timeout) {
+		this.timeout = timeout;
+	}
+
+	public void setLogSegmentSize(long logSegmentSize) {
+		this.logSegmentSize = logSegmentSize;
+	}
+
+	public void setLogRetention(int logRetention) {
+		this.logRetention = logRetention;
+	}
+
 
 	protected File getTidesdkDirectory() {
-		tidesdkDirectory.mkdirs();
 		return tidesdkDirectory;
 	}
 
@@ -199,12 +335,10 @@ public abstract class AbstractTidesdkMojo extends AbstractMojo {
 	}
 
 	protected List<FileSet> getFileSets() {
-		if(fileSets == null || fileSets.isEmpty()) {
-			FileSet r = new FileSet();
-			r.setDirectory(defaultFileSet);
-			fileSets = Collections.singletonList(r);
-		}
-		return fileSets;
+		if(fileSets != null && !fileSets.isEmpty()) return fileSets;
+		FileSet r = new FileSet();
+		r.setDirectory(defaultFileSet);
+		return Collections.singletonList(r);
 	}
 
 	protected String getIcon() {
@@ -219,40 +353,205 @@ public abstract class AbstractTidesdkMojo extends AbstractMojo {
 		return display;
 	}
 
-	protected void run(ProcessBuilder processBuilder, String goal) throws MojoExecutionException {
-		final File out = new File(getLogsDirectory(), goal + OUT_LOG_SUFFIX);
-		final File err = new File(getLogsDirectory(), goal + ERR_LOG_SUFFIX);
+	protected List<Display> getWindows() {
+		List<Display> all = new ArrayList<>();
+		if(display != null) all.add(display);
+		if(windows != null) all.addAll(windows);
+		if(all.isEmpty()) all.add(new Display());
+		return all;
+	}
+
+	protected List<String> getModules() {
+		return modules == null || modules.isEmpty() ? ModuleDetector.STANDARD_MODULES : modules;
+	}
+
+	protected boolean isDetectModules() {
+		return detectModules;
+	}
+
+	protected List<RuntimeModule> getExtraModules() {
+		return extraModules == null ? Collections.<RuntimeModule>emptyList() : extraModules;
+	}
+
+	protected List<Property> getProperties() {
+		return properties == null ? Collections.<Property>emptyList() : properties;
+	}
+
+	protected boolean isIncremental() {
+		return incremental;
+	}
+
+	protected int getParallelism() {
+		return parallelism;
+	}
+
+	protected StagingStrategy getStagingStrategy() {
+		return stagingStrategy == null ? StagingStrategy.copy : stagingStrategy;
+	}
+
+	protected boolean isMinify() {
+		return minify;
+	}
+
+	protected boolean isPackResources() {
+		return packResources;
+	}
+
+	protected List<String> getUnpackedResources() {
+		return unpackedResources == null ? Collections.<String>emptyList() : unpackedResources;
+	}
+
+	protected String getGuid() {
+		return guid;
+	}
 
+	protected Date getOutputTimestamp() throws MojoExecutionException {
+		if(outputTimestamp == null || outputTimestamp.length() < 2) return null;
 		try {
-			notifyError(logCommand(processBuilder)
-					.redirectOutput(out.exists() ? ProcessBuilder.Redirect.appendTo(out) : ProcessBuilder.Redirect.to(out))
-					.redirectError(err.exists() ? ProcessBuilder.Redirect.appendTo(err) : ProcessBuilder.Redirect.to(err))
-					.start().waitFor(), goal);
+			return outputTimestamp.matches("\\d+") ? new Date(Long.parseLong(outputTimestamp) * 1000L)
+					: Date.from(OffsetDateTime.parse(outputTimestamp).toInstant());
+		} catch (DateTimeParseException | NumberFormatException e) {
+			throw new MojoExecutionException("Invalid outputTimestamp: " + outputTimestamp, e);
+		}
+	}
+
+	protected SdkResolver.Sdk resolveSdk(OS target) throws MojoExecutionException {
+		return new SdkResolver(SDK_CACHE).resolve(OS.system(), target, getSdkHome(), getSdkVersion(), getPythonCommand());
+	}
+
+	protected static File createDirectory(File directory) throws MojoExecutionException {
+		if(!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory())
+			throw new MojoExecutionException(CREATE_DIRECTORY_ERROR_MESSAGE + directory.getAbsolutePath());
+		return directory;
+	}
+
+	protected void run(ProcessBuilder processBuilder, String goal, Metrics metrics) throws MojoExecutionException {
+		final RunLog runLog = startRunLog(goal);
+		Integer errorCode = null;
+		boolean timedOut = false;
+
+		Process process = null;
+		try (Metrics.Phase phase = metrics.start(PROCESS_PHASE_PREFIX + goal)) {
+			process = logCommand(processBuilder).start();
+			OutputPump outPump = new OutputPump(process.getInputStream(), runLog.getOut(), getLog(), goal, false, logSegmentSize * MEGABYTE);
+			OutputPump errPump = new OutputPump(process.getErrorStream(), runLog.getErr(), getLog(), goal, true, logSegmentSize * MEGABYTE);
+			outPump.start();
+			errPump.start();
+
+			if(timeout > 0 && !process.waitFor(timeout, TimeUnit.SECONDS)) {
+				destroy(process);
+				timedOut = true;
+				phase.set("timedOut", true);
+				throw new MojoExecutionException(new StringBuilder("Failed to execute ")
+						.append(goal).append(" goal. The process did not finish within ")
+						.append(timeout).append(" seconds and was killed. See ")
+						.append(runLog.getErr().getAbsolutePath()).toString());
+			}
+			errorCode = process.waitFor();
+			phase.set(Metrics.EXIT_CODE, errorCode);
+			outPump.finish(PUMP_DRAIN_MILLIS);
+			errPump.finish(PUMP_DRAIN_MILLIS);
+			notifyError(errorCode, goal, runLog);
+		} catch (IOException | InterruptedException e) {
+			if(process != null) destroy(process);
+			if(e instanceof InterruptedException) Thread.currentThread().interrupt();
+			throw new MojoExecutionException(new StringBuilder("Failed to execute ")
+					.append(goal).append(" goal.").toString(), e);
+		} finally {
+			finishRunLog(runLog, errorCode, timedOut);
+		}
+	}
+
+	protected void run(String python, String script, List<String> args, File directory, String goal, Metrics metrics)
+			throws MojoExecutionException {
+		final RunLog runLog = startRunLog(goal);
+		Integer errorCode = null;
+		boolean timedOut = false;
+
+		try (Metrics.Phase phase = metrics.start(PROCESS_PHASE_PREFIX + goal)) {
+			phase.set("daemon", true);
+			if(getLog().isInfoEnabled()) getLog().info(COMMAND_MESSAGE_PREFIX + "(daemon) " + script + ' ' + StringUtils.join(args.iterator(), " "));
+			BuilderDaemon daemon = BuilderDaemon.acquire(python, script, new File(getLogsDirectory(), DAEMON_LOG),
+					logSegmentSize * MEGABYTE, logRetention);
+			try {
+				errorCode = daemon.execute(args, directory, runLog.getOut(), runLog.getErr(), getLog(), goal,
+						logSegmentSize * MEGABYTE, timeout);
+			} finally {
+				daemon.release();
+			}
+			phase.set(Metrics.EXIT_CODE, errorCode);
+			notifyError(errorCode, goal, runLog);
+		} catch (TimeoutException e) {
+			timedOut = true;
+			throw new MojoExecutionException(new StringBuilder("Failed to execute ")
+					.append(goal).append(" goal. The builder daemon did not finish within ")
+					.append(timeout).append(" seconds and was killed. See ")
+					.append(runLog.getErr().getAbsolutePath()).toString());
 		} catch (IOException | InterruptedException e) {
+			if(e instanceof InterruptedException) Thread.currentThread().interrupt();
 			throw new MojoExecutionException(new StringBuilder("Failed to execute ")
 					.append(goal).append(" goal.").toString(), e);
+		} finally {
+			finishRunLog(runLog, errorCode, timedOut);
+		}
+	}
+
+	protected void report(Metrics metrics) {
+		try {
+			metrics.write(new File(new File(getTidesdkDirectory(), METRICS_DIRECTORY), metrics.getGoal() + METRICS_SUFFIX));
+		} catch (IOException e) {
+			getLog().warn("Could not write metrics report", e);
 		}
+		metrics.summarise(getLog());
 	}
 
 
+	static void destroy(Process process) {
+		try {
+			Class<?> handle = Class.forName("java.lang.ProcessHandle");
+			Method destroyForcibly = handle.getMethod("destroyForcibly");
+			Iterator<?> descendants = ((Stream<?>) Process.class.getMethod("descendants").invoke(process)).iterator();
+			while(descendants.hasNext()) destroyForcibly.invoke(descendants.next());
+		} catch (ReflectiveOperationException e) {
+			// the process tree is only visible from Java 9 onwards, so only the process itself can be killed
+		}
+		process.destroyForcibly();
+	}
+
 	private File getLogsDirectory() {
-		File logsDirectory = new File(getTidesdkDirectory(), LOGS_DIRECTORY);
-		logsDirectory.mkdirs();
-		return logsDirectory;
+		return new File(getTidesdkDirectory(), LOGS_DIRECTORY);
 	}
 
 	private ProcessBuilder logCommand(ProcessBuilder processBuilder) {
-		if(log.isInfoEnabled()) {
+		if(getLog().isInfoEnabled()) {
 			StringBuilder sb = new StringBuilder(COMMAND_MESSAGE_PREFIX);
 			for(String s : processBuilder.command()) sb.append(' ').append(s);
-			log.info(sb);
+			getLog().info(sb);
 		}
 		return processBuilder;
 	}
 
-	private void notifyError(int errorCode, String goal) throws MojoExecutionException {
+	private RunLog startRunLog(String goal) throws MojoExecutionException {
+		createDirectory(getLogsDirectory());
+		try {
+			return RunLog.start(getLogsDirectory(), goal);
+		} catch (IOException e) {
+			throw new MojoExecutionException("Could not create log files for the " + goal + " goal", e);
+		}
+	}
+
+	private void finishRunLog(RunLog runLog, Integer errorCode, boolean timedOut) {
+		try {
+			runLog.finish(errorCode, timedOut, logRetention);
+		} catch (IOException e) {
+			getLog().warn("Could not record run in " + RunLog.INDEX, e);
+		}
+	}
+
+	private void notifyError(int errorCode, String goal, RunLog runLog) throws MojoExecutionException {
 		if(errorCode != 0) throw new MojoExecutionException(new StringBuilder("Failed to execute ")
-				.append(goal).append(" goal. Details of the error can be found at ")
-				.append(new File(getLogsDirectory(), goal + ERR_LOG_SUFFIX).getAbsolutePath()).toString());
+				.append(goal).append(" goal with exit code ").append(errorCode)
+				.append(". Details of the error can be found at ")
+				.append(runLog.getErr().getAbsolutePath()).toString());
 	}
 }
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2014 Computing Distribution Group Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.groupcdg.maven.tidesdk;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Unpacks zip and jar artifacts into a shared cache keyed on the SHA-256 of the archive, so an
+ * archive is only unpacked the first time its content is seen. Entries are made visible with a
+ * single rename once fully written.
+ */
+final class ArtifactExtractor {
+
+	private static final String TEMP_SUFFIX = ".tmp";
+
+	private final File directory;
+
+	private int extracted, cached;
+
+
+
+	ArtifactExtractor(File directory) {
+		this.directory = directory;
+	}
+
+
+
+	File extract(File archive) throws IOException {
+		File entry = new File(directory, Checksums.sha256(archive));
+		if(entry.isDirectory()) {
+			cached++;
+			return entry;
+		}
+
+		if(!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory())
+			throw new IOException(AbstractTidesdkMojo.CREATE_DIRECTORY_ERROR_MESSAGE + directory.getAbsolutePath());
+		File temp = Files.createTempDirectory(directory.toPath(), entry.getName() + TEMP_SUFFIX).toFile();
+		try {
+			unzip(archive, temp);
+		} catch (IOException e) {
+			FileUtils.deleteQuietly(temp);
+			throw e;
+		}
+		if(!temp.renameTo(entry)) {
+			FileUtils.deleteQuietly(temp);
+			if(!entry.isDirectory()) throw new IOException("Could not create artifact cache entry " + entry.getAbsolutePath());
+		}
+		extracted++;
+		return entry;
+	}
+
+	int getExtracted() {
+		return extracted;
+	}
+
+	int getCached() {
+		return cached;
+	}
+
+
+
+	private static void unzip(File archive, File target) throws IOException {
+		String root = target.getCanonicalPath() + File.separator;
+		try (ZipInputStream zip = new ZipInputStream(new BufferedInputStream(new FileInputStream(archive)))) {
+			for(ZipEntry entry; (entry = zip.getNextEntry()) != null; ) {
+				File file = new File(target, entry.getName());
+				if(!file.getCanonicalPath().startsWith(root))
+					throw new IOException("Entry " + entry.getName() + " of " + archive + " points outside the archive");
+				if(entry.isDirectory()) {
+					if(!file.isDirectory() && !file.mkdirs()) throw new IOException("Could not create " + file);
+					continue;
+				}
+				File parent = file.getParentFile();
+				if(!parent.isDirectory() && !parent.mkdirs()) throw new IOException("Could not create " + parent);
+				Files.copy(zip, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
+	}
+}
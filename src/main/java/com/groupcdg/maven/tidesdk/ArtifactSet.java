@@ -0,0 +1,100 @@
+/*
+ * Copyright 2014 Computing Distribution Group Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.groupcdg.maven.tidesdk;
+
+import org.apache.maven.model.FileSet;
+
+/**
+ * Resources taken from a zip or jar artifact, such as a WebJar. The directory is the path of the
+ * root inside the archive, and matching entries are staged under the target path.
+ */
+public class ArtifactSet extends FileSet {
+
+	private static final String DEFAULT_TYPE = "jar";
+
+	private String groupId;
+
+	private String artifactId;
+
+	private String version;
+
+	private String type;
+
+	private String classifier;
+
+	private String targetPath;
+
+
+
+	public void setGroupId(String groupId) {
+		this.groupId = groupId;
+	}
+
+	public void setArtifactId(String artifactId) {
+		this.artifactId = artifactId;
+	}
+
+	public void setVersion(String version) {
+		this.version = version;
+	}
+
+	public void setType(String type) {
+		this.type = type;
+	}
+
+	public void setClassifier(String classifier) {
+		this.classifier = classifier;
+	}
+
+	public void setTargetPath(String targetPath) {
+		this.targetPath = targetPath;
+	}
+
+
+
+	String getGroupId() {
+		return groupId;
+	}
+
+	String getArtifactId() {
+		return artifactId;
+	}
+
+	String getVersion() {
+		return version;
+	}
+
+	String getType() {
+		return type == null ? DEFAULT_TYPE : type;
+	}
+
+	String getClassifier() {
+		return classifier == null ? "" : classifier;
+	}
+
+	String getPrefix() {
+		if(targetPath == null) return "";
+		String prefix = targetPath.replace('\\', '/');
+		while(prefix.startsWith("/")) prefix = prefix.substring(1);
+		return prefix.isEmpty() || prefix.endsWith("/") ? prefix : prefix + '/';
+	}
+
+	String getCoordinates() {
+		return groupId + ':' + artifactId + ':' + getType() + (getClassifier().isEmpty() ? "" : ':' + classifier)
+				+ (version == null ? "" : ':' + version);
+	}
+}
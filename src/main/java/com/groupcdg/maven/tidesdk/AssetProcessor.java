@@ -0,0 +1,105 @@
+/*
+ * Copyright 2014 Computing Distribution Group Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.groupcdg.maven.tidesdk;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs staged assets through a {@link Minifier}, keeping every result in a cache directory keyed
+ * on the SHA-256 of the source so that unchanged assets are never processed twice.
+ */
+final class AssetProcessor {
+
+	private final File cacheDirectory;
+
+	private final AtomicInteger processed = new AtomicInteger(), cached = new AtomicInteger();
+
+	private final AtomicLong saved = new AtomicLong();
+
+
+
+	AssetProcessor(File cacheDirectory) {
+		this.cacheDirectory = cacheDirectory;
+	}
+
+
+
+	static String getOptions() {
+		return "minify=" + Minifier.VERSION;
+	}
+
+	boolean accepts(String path) {
+		return Minifier.forPath(path) != null;
+	}
+
+	String process(String path, File source, File target) throws IOException {
+		byte[] content = FileUtils.readFileToByteArray(source);
+		String hash = Checksums.hex(Checksums.digest().digest(content));
+		FileUtils.writeByteArrayToFile(target, process(path, hash, content));
+		return hash;
+	}
+
+	byte[] process(String path, String hash, byte[] content) throws IOException {
+		Minifier minifier = Minifier.forPath(path);
+		File entry = new File(cacheDirectory, hash + '.' + minifier + Minifier.VERSION);
+		byte[] result;
+
+		if(entry.isFile()) {
+			result = FileUtils.readFileToByteArray(entry);
+			cached.incrementAndGet();
+		} else {
+			result = minifier.process(content);
+			if(result.length >= content.length) result = content;
+			store(entry, result);
+			processed.incrementAndGet();
+		}
+		saved.addAndGet(content.length - result.length);
+		return result;
+	}
+
+	int getProcessed() {
+		return processed.get();
+	}
+
+	int getCached() {
+		return cached.get();
+	}
+
+	long getSaved() {
+		return saved.get();
+	}
+
+
+
+	private void store(File entry, byte[] result) throws IOException {
+		if(!cacheDirectory.isDirectory() && !cacheDirectory.mkdirs() && !cacheDirectory.isDirectory())
+			throw new IOException(AbstractTidesdkMojo.CREATE_DIRECTORY_ERROR_MESSAGE + cacheDirectory.getAbsolutePath());
+		File temp = File.createTempFile(entry.getName(), ".tmp", cacheDirectory);
+		FileUtils.writeByteArrayToFile(temp, result);
+		if(!temp.renameTo(entry) && !entry.isFile()) {
+			Files.deleteIfExists(temp.toPath());
+			throw new IOException("Could not write " + entry.getAbsolutePath());
+		}
+		Files.deleteIfExists(temp.toPath());
+	}
+}
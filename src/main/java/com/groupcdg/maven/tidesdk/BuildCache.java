@@ -0,0 +1,137 @@
+/*
+ * Copyright 2014 Computing Distribution Group Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.groupcdg.maven.tidesdk;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Local content-addressed store of bundler outputs. Each entry is a directory named after its key;
+ * the modification time of the entry records its last use and drives least-recently-used eviction
+ * once the cache grows beyond its size limit.
+ */
+final class BuildCache {
+
+	private static final String SIZE_FILE = ".size";
+
+	private static final String TEMP_SUFFIX = ".tmp";
+
+	private final File directory;
+
+	private final long maxBytes;
+
+	private final Log log;
+
+
+
+	BuildCache(File directory, long maxBytes, Log log) {
+		this.directory = directory;
+		this.maxBytes = maxBytes;
+		this.log = log;
+	}
+
+
+
+	boolean restore(String key, File target) throws IOException {
+		File entry = new File(directory, key);
+		if(!new File(entry, SIZE_FILE).isFile()) return false;
+
+		if(target.exists()) FileUtils.deleteDirectory(target);
+		try {
+			FileUtils.copyDirectory(entry, target);
+		} catch (IOException e) {
+			FileUtils.deleteQuietly(target);
+			throw e;
+		}
+		FileUtils.deleteQuietly(new File(target, SIZE_FILE));
+		entry.setLastModified(System.currentTimeMillis());
+		log.info("Restored build output from cache entry " + key);
+		return true;
+	}
+
+	void store(String key, File source) throws IOException {
+		File entry = new File(directory, key);
+		if(!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory())
+			throw new IOException(AbstractTidesdkMojo.CREATE_DIRECTORY_ERROR_MESSAGE + directory.getAbsolutePath());
+		File temp = Files.createTempDirectory(directory.toPath(), key + TEMP_SUFFIX).toFile();
+		FileUtils.copyDirectory(source, temp);
+		FileUtils.writeStringToFile(new File(temp, SIZE_FILE),
+				String.valueOf(FileUtils.sizeOfDirectory(temp)), StandardCharsets.UTF_8.name());
+
+		if(entry.exists()) FileUtils.deleteQuietly(entry);
+		if(!temp.renameTo(entry)) {
+			FileUtils.deleteQuietly(temp);
+			if(new File(entry, SIZE_FILE).isFile()) return;
+			throw new IOException("Could not create cache entry " + entry.getAbsolutePath());
+		}
+		log.info("Stored build output in cache entry " + key);
+		evict();
+	}
+
+
+
+	private void evict() throws IOException {
+		File[] entries = directory.listFiles(new FileFilter() {
+			@Override
+			public boolean accept(File file) {
+				return !file.getName().contains(TEMP_SUFFIX);
+			}
+		});
+		if(entries == null) return;
+
+		long total = 0;
+		long[] sizes = new long[entries.length];
+		for(int i = 0; i < entries.length; i++) total += sizes[i] = size(entries[i]);
+		if(total <= maxBytes) return;
+
+		Integer[] order = new Integer[entries.length];
+		for(int i = 0; i < order.length; i++) order[i] = i;
+		final long[] used = new long[entries.length];
+		for(int i = 0; i < entries.length; i++) used[i] = entries[i].lastModified();
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return Long.compare(used[a], used[b]);
+			}
+		});
+
+		for(int i = 0; i < order.length && total > maxBytes; i++) {
+			File entry = entries[order[i]];
+			FileUtils.deleteQuietly(entry);
+			total -= sizes[order[i]];
+			if(log.isDebugEnabled()) log.debug("Evicted cache entry " + entry.getName());
+		}
+	}
+
+	private long size(File entry) throws IOException {
+		File size = new File(entry, SIZE_FILE);
+		if(!size.isFile()) return entry.isDirectory() ? FileUtils.sizeOfDirectory(entry) : entry.length();
+		try {
+			return Long.parseLong(FileUtils.readFileToString(size, StandardCharsets.UTF_8.name()).trim());
+		} catch (NumberFormatException e) {
+			return FileUtils.sizeOfDirectory(entry);
+		}
+	}
+}
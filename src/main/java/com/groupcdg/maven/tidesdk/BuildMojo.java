@@ -16,38 +16,245 @@
 
 package com.groupcdg.maven.tidesdk;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 
-@Mojo(name = "build", defaultPhase = LifecyclePhase.PACKAGE)
+@Mojo(name = "build", defaultPhase = LifecyclePhase.PACKAGE, threadSafe = true)
 public class BuildMojo extends AbstractTidesdkMojo {
 
 
 	private static final String BUILD = "build";
 
+	private static final long MEGABYTE = 1024L * 1024L;
+
+	static final String BUNDLE = "bundle", BUNDLE_CHECKSUMS = "bundle.sha256";
+
+
+
+	@Parameter(property = "buildCache", defaultValue = "false")
+	private boolean buildCache;
+
+	@Parameter(property = "buildCacheDirectory", defaultValue = "${user.home}/.tidesdk/build-cache")
+	private File buildCacheDirectory;
+
+	@Parameter(property = "buildCacheSize", defaultValue = "2048")
+	private long buildCacheSize;
+
+	@Parameter(property = "platforms")
+	private List<String> platforms;
+
+	@Parameter(property = "buildThreads", defaultValue = "0")
+	private int buildThreads;
+
+	@Parameter(property = "builderDaemon", defaultValue = "false")
+	private boolean builderDaemon;
+
+	@Parameter(property = "bundleChecksums", defaultValue = "false")
+	private boolean bundleChecksums;
+
+
+
+	public void setBuildCache(boolean buildCache) {
+		this.buildCache = buildCache;
+	}
+
+	public void setBuildCacheDirectory(File buildCacheDirectory) {
+		this.buildCacheDirectory = buildCacheDirectory;
+	}
+
+	public void setBuildCacheSize(long buildCacheSize) {
+		this.buildCacheSize = buildCacheSize;
+	}
+
+	public void setPlatforms(List<String> platforms) {
+		this.platforms = platforms;
+	}
+
+	public void setBuildThreads(int buildThreads) {
+		this.buildThreads = buildThreads;
+	}
+
+	public void setBuilderDaemon(boolean builderDaemon) {
+		this.builderDaemon = builderDaemon;
+	}
+
+	public void setBundleChecksums(boolean bundleChecksums) {
+		this.bundleChecksums = bundleChecksums;
+	}
+
 
 
 	public void execute() throws MojoExecutionException {
 		final File outputDirectory = getOutputDirectory();
+		final Map<OS, SdkResolver.Sdk> targets = getPlatforms();
+		createDirectory(outputDirectory);
 
-		if (!outputDirectory.exists() && !outputDirectory.mkdirs())
-			throw new MojoExecutionException(CREATE_DIRECTORY_ERROR_MESSAGE + outputDirectory.getAbsolutePath());
+		final Metrics metrics = new Metrics(BUILD);
+		try {
+			build(outputDirectory, targets, metrics);
+		} finally {
+			report(metrics);
+		}
+	}
+
+
+
+	private void build(final File outputDirectory, final Map<OS, SdkResolver.Sdk> targets, final Metrics metrics)
+			throws MojoExecutionException {
+		if(targets.size() == 1) {
+			Map.Entry<OS, SdkResolver.Sdk> target = targets.entrySet().iterator().next();
+			build(outputDirectory, target.getValue(), target.getKey(), BUILD, metrics);
+			return;
+		}
+
+		final int threads = buildThreads > 0 ? buildThreads : Math.min(targets.size(), Runtime.getRuntime().availableProcessors());
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		final Map<OS, Future<Void>> builds = new LinkedHashMap<>();
+		try {
+			for(final Map.Entry<OS, SdkResolver.Sdk> target : targets.entrySet()) builds.put(target.getKey(), executor.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws MojoExecutionException {
+					build(outputDirectory, target.getValue(), target.getKey(), BUILD + '-' + target.getKey().name(), metrics);
+					return null;
+				}
+			}));
+			report(builds);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
 
-		build(outputDirectory);
+	private void report(Map<OS, Future<Void>> builds) throws MojoExecutionException {
+		StringBuilder failures = new StringBuilder();
+		for(Map.Entry<OS, Future<Void>> build : builds.entrySet()) {
+			try {
+				build.getValue().get();
+				getLog().info("Built " + build.getKey().name() + " bundle");
+			} catch (ExecutionException e) {
+				getLog().error("Failed to build " + build.getKey().name() + " bundle: " + e.getCause().getMessage());
+				failures.append(failures.length() == 0 ? "" : ", ").append(build.getKey().name());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new MojoExecutionException("Interrupted while building bundles", e);
+			}
+		}
+		if(failures.length() > 0) throw new MojoExecutionException("Failed to build bundles for: " + failures);
 	}
 
+	private Map<OS, SdkResolver.Sdk> getPlatforms() throws MojoExecutionException {
+		Map<OS, SdkResolver.Sdk> targets = new LinkedHashMap<>();
+		if(platforms == null || platforms.isEmpty()) {
+			OS host = OS.system();
+			targets.put(host, resolveSdk(host));
+			return targets;
+		}
 
+		for(String platform : platforms) {
+			final OS target;
+			try {
+				target = OS.valueOf(platform.trim());
+			} catch (IllegalArgumentException e) {
+				throw new MojoExecutionException("Unsupported platform: " + platform);
+			}
+			if(!targets.containsKey(target)) targets.put(target, resolveSdk(target));
+		}
+		return targets;
+	}
+
+	private void build(final File outputDirectory, final SdkResolver.Sdk sdk, final OS os, final String goal, final Metrics metrics)
+			throws MojoExecutionException {
+		final File platformDirectory = new File(outputDirectory, "packages/" + os.name());
+		final File buildDirectory = new File(platformDirectory, BUNDLE);
+		final String builder = sdk.getBuilder().getPath();
+		if(bundleChecksums) FileUtils.deleteQuietly(new File(platformDirectory, BUNDLE_CHECKSUMS));
+
+		final BuildCache cache = buildCache ? new BuildCache(buildCacheDirectory, buildCacheSize * MEGABYTE, getLog()) : null;
+		String key = null;
+		if(cache != null) try (Metrics.Phase phase = metrics.start("cache-restore-" + os.name())) {
+			key = cacheKey(outputDirectory, os, builder);
+			boolean hit = cache.restore(key, buildDirectory);
+			phase.set("hit", hit);
+			if(hit) {
+				writeChecksums(platformDirectory, os, metrics);
+				return;
+			}
+		} catch (IOException e) {
+			getLog().warn("Could not restore build output from cache", e);
+		}
+
+		if(cache != null) try {
+			FileUtils.deleteDirectory(buildDirectory);
+		} catch (IOException e) {
+			throw new MojoExecutionException("Failed to clean " + buildDirectory.getAbsolutePath() + " before building", e);
+		}
+		createDirectory(buildDirectory);
+		final String python = sdk.getPython();
+		final List<String> args = Arrays.asList("-d", buildDirectory.getAbsolutePath(), "-i", "'dist,packages'",
+				"-t", "bundle", "-p", "-v", outputDirectory.getAbsolutePath());
+		if(builderDaemon) run(python, builder, args, new File(System.getProperty("user.dir")), goal, metrics);
+		else {
+			List<String> command = new ArrayList<>(Arrays.asList(python, builder));
+			command.addAll(args);
+			run(new ProcessBuilder(command), goal, metrics);
+		}
+		writeChecksums(platformDirectory, os, metrics);
+
+		if(cache != null) try (Metrics.Phase phase = metrics.start("cache-store-" + os.name())) {
+			cache.store(key, buildDirectory);
+		} catch (IOException e) {
+			getLog().warn("Could not store build output in cache", e);
+		}
+	}
+
+	private void writeChecksums(File platformDirectory, OS os, Metrics metrics) throws MojoExecutionException {
+		if(!bundleChecksums) return;
+		try (Metrics.Phase phase = metrics.start("checksums-" + os.name()); CopyEngine engine = new CopyEngine(getParallelism())) {
+			ReleaseManifest checksums = ReleaseManifest.scan(
+					Collections.singletonMap(BUNDLE, new File(platformDirectory, BUNDLE)), engine);
+			checksums.save(new File(platformDirectory, BUNDLE_CHECKSUMS));
+			phase.set(Metrics.FILES, checksums.getHashes().size());
+			getLog().info("Recorded " + checksums.getHashes().size() + " " + os.name()
+					+ " bundle checksums, Merkle root " + checksums.merkleRoot());
+		} catch (IOException e) {
+			throw new MojoExecutionException("Failed to record " + os.name() + " bundle checksums", e);
+		}
+	}
+
+	private String cacheKey(File outputDirectory, OS os, String builder) throws MojoExecutionException {
+		try {
+			File builderScript = new File(builder);
+			return Checksums.sha256(new StringBuilder()
+					.append("resources:").append(Checksums.sha256Tree(new File(outputDirectory, "Resources"))).append('\n')
+					.append("manifest:").append(hashOf(new File(outputDirectory, "manifest"))).append('\n')
+					.append("tiapp:").append(hashOf(new File(outputDirectory, "tiapp.xml"))).append('\n')
+					.append("builder:").append(hashOf(builderScript)).append('\n')
+					.append("sdk:").append(getSdkVersion()).append('\n')
+					.append("os:").append(os.name()).append('\n')
+					.toString());
+		} catch (IOException e) {
+			throw new MojoExecutionException("Failed to compute build cache key", e);
+		}
+	}
 
-	private void build(final File outputDirectory) throws MojoExecutionException {
-		final OS os = OS.system();
-		final File buildDirectory = new File(outputDirectory, "packages/" + os.name() + "/bundle");
-		buildDirectory.mkdirs();
-		run(new ProcessBuilder(os.pythonCommand(getPythonCommand()), os.builderCommand(getSdkHome(), getSdkVersion()),
-				"-d", buildDirectory.getAbsolutePath(), "-i", "'dist,packages'", "-t", "bundle", "-p", "-v",
-				outputDirectory.getAbsolutePath()), BUILD);
+	private String hashOf(File file) throws IOException {
+		return file.isFile() ? Checksums.sha256(file) : "none";
 	}
 }
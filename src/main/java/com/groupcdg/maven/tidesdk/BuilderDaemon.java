@@ -0,0 +1,269 @@
+/*
+ * Copyright 2014 Computing Distribution Group Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.groupcdg.maven.tidesdk;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A long-lived Python interpreter running tidebuilder.py on request. Workers are pooled per
+ * interpreter and builder script, i.e. per SDK version and target platform, for the lifetime of
+ * the Maven JVM and shut down by a shutdown hook when the session ends. A build borrows an idle
+ * worker or starts another one, so parallel builds of the same platform never queue behind each
+ * other. The builder's output is streamed back over loopback sockets into the per-run logs, and
+ * each worker's own diagnostics go to a log of its own, rotated and pruned like the per-run logs.
+ */
+final class BuilderDaemon implements AutoCloseable {
+
+	private static final String WORKER = "tidebuilder_worker.py";
+
+	private static final long STARTUP_SECONDS = 60L, SHUTDOWN_SECONDS = 5L, DRAIN_MILLIS = 10000L;
+
+	private static final Pattern EXIT = Pattern.compile("\"exit\":\\s*(-?\\d+)");
+
+	private static final String END_OF_STREAM = "";
+
+	private static final Map<String, Deque<BuilderDaemon>> IDLE = new HashMap<>();
+
+	private static final List<BuilderDaemon> LIVE = new ArrayList<>();
+
+	private static final BitSet SLOTS = new BitSet();
+
+	static {
+		Runtime.getRuntime().addShutdownHook(new Thread("tidesdk-builder-daemon-shutdown") {
+			@Override
+			public void run() {
+				shutdownAll();
+			}
+		});
+	}
+
+	private final String key;
+
+	private final int slot;
+
+	private final Process process;
+
+	private final Writer requests;
+
+	private final BlockingQueue<String> responses = new LinkedBlockingQueue<>();
+
+	private int requestId;
+
+
+
+	private BuilderDaemon(String key, int slot, String python, String builder, File log, long segmentBytes, int retention)
+			throws IOException {
+		this.key = key;
+		this.slot = slot;
+		this.process = new ProcessBuilder(python, "-u", worker().getAbsolutePath(), builder).start();
+		new OutputPump(process.getErrorStream(), log, null, "builder-daemon", true, segmentBytes, retention).start();
+		this.requests = new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8);
+
+		Thread reader = new Thread("tidesdk-builder-daemon") {
+			@Override
+			public void run() {
+				try (BufferedReader reader = new BufferedReader(
+						new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+					for(String line; (line = reader.readLine()) != null; ) responses.add(line);
+				} catch (IOException e) {
+					// the worker has gone away, which the waiting request reports
+				}
+				responses.add(END_OF_STREAM);
+			}
+		};
+		reader.setDaemon(true);
+		reader.start();
+
+		try {
+			if(!receive(STARTUP_SECONDS).contains("ready")) throw new IOException("Builder daemon failed to start, see " + log);
+		} catch (InterruptedException | TimeoutException e) {
+			AbstractTidesdkMojo.destroy(process);
+			throw new IOException("Builder daemon failed to start, see " + log, e);
+		}
+	}
+
+
+
+	static BuilderDaemon acquire(String python, String builder, File log, long segmentBytes, int retention) throws IOException {
+		String key = python + '\0' + builder;
+		int slot;
+		synchronized (LIVE) {
+			Deque<BuilderDaemon> idle = IDLE.get(key);
+			while(idle != null && !idle.isEmpty()) {
+				BuilderDaemon daemon = idle.pop();
+				if(daemon.isAlive()) return daemon;
+				daemon.retire();
+			}
+			slot = SLOTS.nextClearBit(1);
+			SLOTS.set(slot);
+		}
+		BuilderDaemon daemon = null;
+		try {
+			daemon = new BuilderDaemon(key, slot, python, builder, slotLog(log, slot), segmentBytes, retention);
+			return daemon;
+		} finally {
+			synchronized (LIVE) {
+				if(daemon != null) LIVE.add(daemon);
+				else SLOTS.clear(slot);
+			}
+		}
+	}
+
+	static void shutdownAll() {
+		List<BuilderDaemon> daemons;
+		synchronized (LIVE) {
+			daemons = new ArrayList<>(LIVE);
+			LIVE.clear();
+			IDLE.clear();
+			SLOTS.clear();
+		}
+		for(BuilderDaemon daemon : daemons) daemon.close();
+	}
+
+	void release() {
+		synchronized (LIVE) {
+			if(!LIVE.contains(this)) return;
+			if(!isAlive()) {
+				retire();
+				return;
+			}
+			Deque<BuilderDaemon> idle = IDLE.get(key);
+			if(idle == null) IDLE.put(key, idle = new ArrayDeque<>());
+			idle.push(this);
+		}
+	}
+
+	synchronized int execute(List<String> args, File directory, File out, File err, Log log, String prefix,
+			long segmentBytes, long timeoutSeconds) throws IOException, InterruptedException, TimeoutException {
+		try (ServerSocket outServer = listen(); ServerSocket errServer = listen()) {
+			StringBuilder request = new StringBuilder("{\"id\": ").append(++requestId)
+					.append(", \"cwd\": ").append(Json.quote(directory.getAbsolutePath()))
+					.append(", \"out\": ").append(outServer.getLocalPort())
+					.append(", \"err\": ").append(errServer.getLocalPort())
+					.append(", \"args\": [");
+			for(int i = 0; i < args.size(); i++) request.append(i == 0 ? "" : ", ").append(Json.quote(args.get(i)));
+			requests.write(request.append("]}\n").toString());
+			requests.flush();
+
+			try (Socket outSocket = outServer.accept(); Socket errSocket = errServer.accept()) {
+				OutputPump outPump = new OutputPump(outSocket.getInputStream(), out, log, prefix, false, segmentBytes);
+				OutputPump errPump = new OutputPump(errSocket.getInputStream(), err, log, prefix, true, segmentBytes);
+				outPump.start();
+				errPump.start();
+				Matcher exit = EXIT.matcher(receive(timeoutSeconds));
+				if(!exit.find()) throw new IOException("Builder daemon exited unexpectedly");
+				outPump.finish(DRAIN_MILLIS);
+				errPump.finish(DRAIN_MILLIS);
+				return Integer.parseInt(exit.group(1));
+			}
+		} catch (IOException | InterruptedException | TimeoutException e) {
+			kill();
+			throw e;
+		}
+	}
+
+	boolean isAlive() {
+		try {
+			process.exitValue();
+			return false;
+		} catch (IllegalThreadStateException e) {
+			return true;
+		}
+	}
+
+	@Override
+	public void close() {
+		try {
+			requests.write("{\"shutdown\": true}\n");
+			requests.close();
+			if(process.waitFor(SHUTDOWN_SECONDS, TimeUnit.SECONDS)) return;
+		} catch (IOException e) {
+			// already gone
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		AbstractTidesdkMojo.destroy(process);
+	}
+
+
+
+	private static File slotLog(File log, int slot) {
+		if(slot == 1) return log;
+		String name = log.getName();
+		int extension = name.lastIndexOf('.');
+		return new File(log.getParentFile(), extension < 0 ? name + '-' + slot
+				: name.substring(0, extension) + '-' + slot + name.substring(extension));
+	}
+
+	private ServerSocket listen() throws IOException {
+		ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+		server.setSoTimeout((int) TimeUnit.SECONDS.toMillis(STARTUP_SECONDS));
+		return server;
+	}
+
+	private String receive(long timeoutSeconds) throws InterruptedException, TimeoutException {
+		String line = timeoutSeconds > 0 ? responses.poll(timeoutSeconds, TimeUnit.SECONDS) : responses.take();
+		if(line == null) throw new TimeoutException();
+		return line;
+	}
+
+	private void kill() {
+		synchronized (LIVE) {
+			retire();
+		}
+		AbstractTidesdkMojo.destroy(process);
+	}
+
+	private void retire() {
+		if(LIVE.remove(this)) SLOTS.clear(slot);
+	}
+
+	private static File worker() throws IOException {
+		File worker = File.createTempFile("tidebuilder_worker", ".py");
+		worker.deleteOnExit();
+		try (InputStream in = BuilderDaemon.class.getResourceAsStream(WORKER)) {
+			FileUtils.copyInputStreamToFile(in, worker);
+		}
+		return worker;
+	}
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2014 Computing Distribution Group Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.groupcdg.maven.tidesdk;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+final class Checksums {
+
+	static final String ALGORITHM = "SHA-256";
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private static final long MAP_WINDOW = 64L * 1024L * 1024L;
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+
+
+	private Checksums() {
+	}
+
+
+
+	static MessageDigest digest() {
+		try {
+			return MessageDigest.getInstance(ALGORITHM);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(ALGORITHM + " is not available", e);
+		}
+	}
+
+	static String sha256(File file) throws IOException {
+		try (InputStream in = new FileInputStream(file)) {
+			return sha256(in);
+		}
+	}
+
+	static String sha256(InputStream in) throws IOException {
+		MessageDigest digest = digest();
+		byte[] buffer = new byte[BUFFER_SIZE];
+		for(int n; (n = in.read(buffer)) != -1; ) digest.update(buffer, 0, n);
+		return hex(digest.digest());
+	}
+
+	static String sha256Mapped(File file) throws IOException {
+		MessageDigest digest = digest();
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long size = channel.size();
+			if(size < BUFFER_SIZE) {
+				ByteBuffer buffer = ByteBuffer.allocate((int) size);
+				while(buffer.hasRemaining() && channel.read(buffer) >= 0) continue;
+				buffer.flip();
+				digest.update(buffer);
+			}
+			else for(long position = 0; position < size; position += MAP_WINDOW)
+				digest.update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_WINDOW, size - position)));
+		}
+		return hex(digest.digest());
+	}
+
+	static String sha256(String text) {
+		return hex(digest().digest(text.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	static String sha256Tree(File directory) throws IOException {
+		MessageDigest digest = digest();
+		if(directory.isDirectory()) updateTree(digest, directory, "");
+		return hex(digest.digest());
+	}
+
+	static String copy(File source, File target) throws IOException {
+		MessageDigest digest = digest();
+		byte[] buffer = new byte[BUFFER_SIZE];
+		try (InputStream in = new FileInputStream(source); OutputStream out = new FileOutputStream(target)) {
+			for(int n; (n = in.read(buffer)) != -1; ) {
+				digest.update(buffer, 0, n);
+				out.write(buffer, 0, n);
+			}
+		}
+		return hex(digest.digest());
+	}
+
+	private static void updateTree(MessageDigest digest, File directory, String prefix) throws IOException {
+		String[] names = directory.list();
+		if(names == null) throw new IOException("Failed to list contents of " + directory);
+		Arrays.sort(names);
+		for(String name : names) {
+			File file = new File(directory, name);
+			if(file.isDirectory()) updateTree(digest, file, prefix + name + '/');
+			else digest.update((prefix + name + '\0' + sha256(file) + '\n').getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	static String hex(byte[] bytes) {
+		char[] chars = new char[bytes.length * 2];
+		for(int i = 0; i < bytes.length; i++) {
+			chars[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+			chars[i * 2 + 1] = HEX[bytes[i] & 0xf];
+		}
+		return new String(chars);
+	}
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2014 Computing Distribution Group Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.groupcdg.maven.tidesdk;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Work-stealing pool used to fan file operations out across the available cores.
+ */
+final class CopyEngine implements AutoCloseable {
+
+	interface Action<T> {
+		void apply(int index, T item) throws IOException;
+	}
+
+
+	private static final int THRESHOLD = 8;
+
+	private final ForkJoinPool pool;
+
+
+
+	CopyEngine(int parallelism) {
+		pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+	}
+
+
+
+	int getParallelism() {
+		return pool.getParallelism();
+	}
+
+	<T> void forEach(List<T> items, Action<? super T> action) throws IOException {
+		AtomicReference<IOException> failure = new AtomicReference<>();
+		pool.invoke(new Slice<>(items, action, failure, 0, items.size()));
+		if(failure.get() != null) throw failure.get();
+	}
+
+	@Override
+	public void close() {
+		pool.shutdown();
+	}
+
+
+
+	private static final class Slice<T> extends RecursiveAction {
+
+		private final List<T> items;
+
+		private final Action<? super T> action;
+
+		private final AtomicReference<IOException> failure;
+
+		private final int from, to;
+
+		private Slice(List<T> items, Action<? super T> action, AtomicReference<IOException> failure, int from, int to) {
+			this.items = items;
+			this.action = action;
+			this.failure = failure;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if(to - from > THRESHOLD) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new Slice<>(items, action, failure, from, middle),
+						new Slice<>(items, action, failure, middle, to));
+				return;
+			}
+			for(int i = from; i < to && failure.get() == null; i++) {
+				try {
+					action.apply(i, items.get(i));
+				} catch (IOException e) {
+					failure.compareAndSet(null, e);
+				}
+			}
+		}
+	}
+}
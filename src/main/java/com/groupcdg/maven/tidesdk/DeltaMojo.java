@@ -0,0 +1,203 @@
+/*
+ * Copyright 2014 Computing Distribution Group Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.groupcdg.maven.tidesdk;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Records the file hashes of each built platform bundle as a release manifest and, given the
+ * delta directory of a previous release, writes an update archive per platform holding only the
+ * added and changed files together with the manifest of operations needed to apply it, all paths
+ * being relative to the bundle root. Before any bundle is built the staged resources are handled
+ * the same way, relative to the output directory. Files and links that go away are removed before
+ * anything is written, so a path may turn from a file into a link or back. Added and replaced
+ * files carry their Unix mode in the octal form of {@code chmod}, since zip entries written here
+ * have none, and symbolic links are recreated from their target rather than archived.
+ */
+@Mojo(name = "delta", defaultPhase = LifecyclePhase.PACKAGE, threadSafe = true)
+public class DeltaMojo extends AbstractTidesdkMojo {
+
+
+	private static final String DELTA = "delta";
+
+	static final String RELEASE_MANIFEST = "release.sha256", APPLY_MANIFEST = "delta.manifest";
+
+	private static final String APPLY_MANIFEST_HEADER = "#tidesdk-delta 2";
+
+	private static final String ADD = "add", REPLACE = "replace", DELETE = "delete", LINK = "link", UNLINK = "unlink";
+
+	private static final String DEFAULT_MODE = "644", EXECUTABLE_MODE = "755";
+
+	private static final String RESOURCES = "resources";
+
+	@Parameter(property = "previousRelease")
+	private File previousRelease;
+
+	@Parameter(property = "deltaDirectory", defaultValue = "${project.build.directory}/tidesdk-delta", required = true)
+	private File deltaDirectory;
+
+
+
+	public void setPreviousRelease(File previousRelease) {
+		this.previousRelease = previousRelease;
+	}
+
+	public void setDeltaDirectory(File deltaDirectory) {
+		this.deltaDirectory = deltaDirectory;
+	}
+
+
+
+	public void execute() throws MojoExecutionException {
+		final Metrics metrics = new Metrics(DELTA);
+		try {
+			if(previousRelease != null && !previousRelease.isDirectory())
+				throw new MojoExecutionException("Previous release directory not found: " + previousRelease);
+			for(Map.Entry<String, File> root : getRoots().entrySet()) write(root.getKey(), root.getValue(), metrics);
+			if(previousRelease == null) getLog().info("No previousRelease given, only " + RELEASE_MANIFEST + " files were written");
+		} catch (IOException e) {
+			throw new MojoExecutionException("Failed to create delta package", e);
+		} finally {
+			report(metrics);
+		}
+	}
+
+
+
+	private Map<String, File> getRoots() {
+		Map<String, File> roots = new LinkedHashMap<>();
+		for(OS os : OS.values()) {
+			File bundle = new File(getOutputDirectory(), "packages/" + os.name() + "/bundle");
+			if(bundle.isDirectory()) roots.put(os.name(), bundle);
+		}
+		if(roots.isEmpty()) roots.put(RESOURCES, getOutputDirectory());
+		return roots;
+	}
+
+	private void write(String name, File root, Metrics metrics) throws IOException, MojoExecutionException {
+		final File directory = new File(deltaDirectory, name);
+		createDirectory(directory);
+		final Map<String, File> scanned = RESOURCES.equals(name)
+				? Collections.singletonMap(GenerateMojo.RESOURCES_DIRECTORY, new File(root, GenerateMojo.RESOURCES_DIRECTORY))
+				: Collections.singletonMap("", root);
+		ReleaseManifest current;
+		try (Metrics.Phase phase = metrics.start("hash-" + name); CopyEngine engine = new CopyEngine(getParallelism())) {
+			current = ReleaseManifest.scan(scanned, engine);
+			current.save(new File(directory, RELEASE_MANIFEST));
+			phase.set(Metrics.FILES, current.getHashes().size());
+		}
+		if(previousRelease == null) return;
+
+		try (Metrics.Phase phase = metrics.start(DELTA + '-' + name)) {
+			File previousManifest = new File(previousRelease, name + '/' + RELEASE_MANIFEST);
+			if(!previousManifest.isFile()) getLog().info("No previous " + name + " release, its delta holds every file");
+			ReleaseManifest previous = previousManifest.isFile() ? ReleaseManifest.load(previousManifest) : new ReleaseManifest();
+			File archive = new File(directory, getProject().getArtifactId() + '-' + getProject().getVersion() + '-' + name + "-delta.zip");
+			int[] counts = write(previous, current, root, archive, new File(directory, APPLY_MANIFEST));
+			phase.set("added", counts[0]).set("replaced", counts[1]).set(Metrics.DELETED, counts[2])
+					.set(Metrics.BYTES, archive.length());
+			getLog().info(String.format(Locale.ROOT, "Delta of %s from previous release: %d added, %d replaced, %d deleted, %d unchanged (%d bytes)",
+					name, counts[0], counts[1], counts[2], counts[3], archive.length()));
+		}
+	}
+
+	private int[] write(ReleaseManifest previous, ReleaseManifest current, File root, File archive, File applyManifest)
+			throws IOException {
+		int[] counts = new int[4];
+		StringBuilder operations = new StringBuilder(APPLY_MANIFEST_HEADER).append('\n')
+				.append("#from ").append(previous.digest()).append('\n')
+				.append("#to ").append(current.digest()).append('\n');
+
+		File temp = new File(archive.getParentFile(), archive.getName() + ".tmp");
+		try (ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+			for(Map.Entry<String, String> file : previous.getHashes().entrySet()) {
+				if(current.get(file.getKey()) != null) continue;
+				operations.append(DELETE).append(' ').append(file.getValue()).append(' ').append(file.getKey()).append('\n');
+				counts[2]++;
+			}
+			for(String path : previous.getLinks().keySet()) {
+				if(current.getLink(path) != null) continue;
+				operations.append(UNLINK).append(' ').append(path).append('\n');
+				counts[2]++;
+			}
+			for(Map.Entry<String, String> file : current.getHashes().entrySet()) {
+				String path = file.getKey(), hash = file.getValue(), old = previous.get(path);
+				if(hash.equals(old)) {
+					counts[3]++;
+					continue;
+				}
+				File source = new File(root, path);
+				if(old == null) {
+					operations.append(ADD).append(' ').append(hash).append(' ').append(mode(source)).append(' ').append(path).append('\n');
+					counts[0]++;
+				} else {
+					operations.append(REPLACE).append(' ').append(old).append(' ').append(hash).append(' ').append(mode(source))
+							.append(' ').append(path).append('\n');
+					counts[1]++;
+				}
+				zip.putNextEntry(new ZipEntry(path));
+				Files.copy(source.toPath(), zip);
+				zip.closeEntry();
+			}
+			for(Map.Entry<String, String> link : current.getLinks().entrySet()) {
+				String path = link.getKey(), target = link.getValue(), old = previous.getLink(path);
+				if(target.equals(old)) {
+					counts[3]++;
+					continue;
+				}
+				operations.append(LINK).append(' ').append(path).append('\t').append(target).append('\n');
+				counts[old == null ? 0 : 1]++;
+			}
+			zip.putNextEntry(new ZipEntry(APPLY_MANIFEST));
+			zip.write(operations.toString().getBytes(StandardCharsets.UTF_8));
+			zip.closeEntry();
+		}
+		Files.deleteIfExists(archive.toPath());
+		if(!temp.renameTo(archive)) throw new IOException("Could not write " + archive.getAbsolutePath());
+		FileUtils.writeStringToFile(applyManifest, operations.toString(), StandardCharsets.UTF_8.name());
+		return counts;
+	}
+
+	private static String mode(File file) throws IOException {
+		try {
+			int mode = 0;
+			for(PosixFilePermission permission : Files.getPosixFilePermissions(file.toPath()))
+				mode |= 1 << (PosixFilePermission.values().length - 1 - permission.ordinal());
+			return String.format(Locale.ROOT, "%03o", mode);
+		} catch (UnsupportedOperationException e) {
+			return file.canExecute() ? EXECUTABLE_MODE : DEFAULT_MODE;
+		}
+	}
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2014 Computing Distribution Group Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.groupcdg.maven.tidesdk;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.BufferedWriter;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes the manifest and tiapp.xml descriptors straight to a buffered UTF-8 stream, escaping
+ * values as they are written rather than building the lines up front.
+ */
+final class DescriptorWriter implements Flushable {
+
+	private static final String INDENT = "\t";
+
+	private final Writer out;
+
+	private int depth;
+
+
+
+	DescriptorWriter(OutputStream out) {
+		this.out = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+	}
+
+
+
+	DescriptorWriter declaration() throws IOException {
+		return line("<?xml version='1.0' encoding='UTF-8'?>");
+	}
+
+	DescriptorWriter start(String name, String... attributes) throws IOException {
+		indent();
+		open(name, attributes);
+		out.write('>');
+		newLine();
+		depth++;
+		return this;
+	}
+
+	DescriptorWriter end(String name) throws IOException {
+		depth--;
+		indent();
+		out.write("</");
+		out.write(name);
+		out.write('>');
+		newLine();
+		return this;
+	}
+
+	DescriptorWriter element(String name, Object value, String... attributes) throws IOException {
+		if(value == null) return this;
+		indent();
+		open(name, attributes);
+		out.write('>');
+		escape(String.valueOf(value), false);
+		out.write("</");
+		out.write(name);
+		out.write('>');
+		newLine();
+		return this;
+	}
+
+	DescriptorWriter header(String key, Object value) throws IOException {
+		out.write('#');
+		out.write(key);
+		out.write(": ");
+		if(value != null) escape(String.valueOf(value), true);
+		newLine();
+		return this;
+	}
+
+	DescriptorWriter entry(String key, Object value) throws IOException {
+		escape(key, true);
+		out.write(':');
+		if(value != null) escape(String.valueOf(value), true);
+		newLine();
+		return this;
+	}
+
+	@Override
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+
+
+	private DescriptorWriter line(String line) throws IOException {
+		out.write(line);
+		newLine();
+		return this;
+	}
+
+	private void open(String name, String[] attributes) throws IOException {
+		out.write('<');
+		out.write(name);
+		for(int i = 0; i + 1 < attributes.length; i += 2) {
+			if(attributes[i + 1] == null) continue;
+			out.write(' ');
+			out.write(attributes[i]);
+			out.write("='");
+			escape(attributes[i + 1], false);
+			out.write('\'');
+		}
+	}
+
+	private void indent() throws IOException {
+		for(int i = 0; i < depth; i++) out.write(INDENT);
+	}
+
+	private void newLine() throws IOException {
+		out.write(IOUtils.LINE_SEPARATOR);
+	}
+
+	private void escape(String value, boolean manifest) throws IOException {
+		for(int i = 0, length = value.length(); i < length; i++) {
+			char c = value.charAt(i);
+			if(c == '\r' || c == '\n') out.write(manifest ? ' ' : c);
+			else if(manifest) out.write(c);
+			else if(c == '&') out.write("&amp;");
+			else if(c == '<') out.write("&lt;");
+			else if(c == '>') out.write("&gt;");
+			else if(c == '\'') out.write("&apos;");
+			else if(c == '"') out.write("&quot;");
+			else if(c >= 0x20 && c != '\uFFFE' && c != '\uFFFF' || c == '\t') out.write(c);
+		}
+	}
+}
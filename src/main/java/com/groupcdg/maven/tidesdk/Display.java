@@ -16,11 +16,16 @@
 
 package com.groupcdg.maven.tidesdk;
 
-import java.util.ArrayList;
-import java.util.Collection;
+import java.io.IOException;
 
 public class Display {
 
+	private String id;
+
+	private String title;
+
+	private String url;
+
 	private Integer width;
 
 	private Integer maxWidth;
@@ -49,6 +54,18 @@ public class Display {
 
 
 
+	public void setId(String id) {
+		this.id = id;
+	}
+
+	public void setTitle(String title) {
+		this.title = title;
+	}
+
+	public void setUrl(String url) {
+		this.url = url;
+	}
+
 	public void setWidth(Integer width) {
 		this.width = width;
 	}
@@ -103,29 +120,23 @@ public class Display {
 
 
 
-	Collection<String> createXml(final String name, final String index) {
-		return new ArrayList<String>() {{
-			add("<window>");
-			add("\t<id>initial</id>");
-			add("\t<title>" + name + "</title>");
-			add("\t<url>app://" + index + "</url>");
-
-			if(width != null) add("\t<width>" + width + "</width>");
-			if(maxWidth != null) add("\t<max-width>" + maxWidth + "</max-width>");
-			if(minWidth != null) add("\t<min-width>" + minWidth + "</min-width>");
-			if(height != null) add("\t<height>" + height + "</height>");
-			if(maxHeight != null) add("\t<max-height>" + maxHeight + "</max-height>");
-			if(minHeight != null) add("\t<min-height>" + minHeight + "</min-height>");
-			if(fullscreen != null) add("\t<fullscreen>" + String.valueOf(fullscreen) + "</fullscreen>");
-			if(resizable != null) add("\t<resizable>" + String.valueOf(resizable) + "</resizable>");
-
-			add("\t<chrome scrollbars=\"" + String.valueOf(scrollable == null || scrollable)
-					+ "\">" + String.valueOf(chrome == null || chrome) + "</chrome>");
-			if(maximizable != null) add("\t<maximizable>" + String.valueOf(maximizable) + "</maximizable>");
-			if(minimizable != null) add("\t<minimizable>" + String.valueOf(minimizable) + "</minimizable>");
-			if(closeable != null) add("\t<closeable>" + String.valueOf(closeable) + "</closeable>");
-
-			add("</window>");
-		}};
+	void write(DescriptorWriter xml, String defaultId, String name, String index) throws IOException {
+		xml.start("window")
+				.element("id", id != null ? id : defaultId)
+				.element("title", title != null ? title : name)
+				.element("url", url != null ? url : "app://" + index)
+				.element("width", width)
+				.element("max-width", maxWidth)
+				.element("min-width", minWidth)
+				.element("height", height)
+				.element("max-height", maxHeight)
+				.element("min-height", minHeight)
+				.element("fullscreen", fullscreen)
+				.element("resizable", resizable)
+				.element("chrome", chrome == null || chrome, "scrollbars", String.valueOf(scrollable == null || scrollable))
+				.element("maximizable", maximizable)
+				.element("minimizable", minimizable)
+				.element("closeable", closeable)
+				.end("window");
 	}
 }
@@ -0,0 +1,223 @@
+/*
+ * Copyright 2014 Computing Distribution Group Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.groupcdg.maven.tidesdk;
+
+import org.apache.maven.model.FileSet;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Include/exclude patterns of a {@link FileSet} compiled into a single automaton over path segments.
+ * <p>
+ * Patterns follow the Ant/Maven glob rules: {@code *} and {@code ?} match within a segment,
+ * {@code **} matches any number of segments and a trailing {@code /} stands for {@code /**}.
+ * For compatibility with earlier releases a pattern without any {@code /} matches the file name
+ * at any depth, exactly as {@code **}{@code /pattern} would, and as an exclude it also drops
+ * everything below a directory of that name, as the wildcard file filter used before did.
+ * <p>
+ * The walker carries a {@link State} per directory, so every path segment is matched once
+ * against the live states only, and directories that can hold no included file, or whose every
+ * descendant an exclude ending in {@code **} matches, are pruned without being listed.
+ */
+final class FileSetMatcher {
+
+	final class State {
+
+		private final BitSet includes, excludes;
+
+		private State(BitSet includes, BitSet excludes) {
+			this.includes = includes;
+			this.excludes = excludes;
+		}
+
+		State descend(String segment) {
+			return new State(includeAll ? includes : include.step(includes, segment), exclude.step(excludes, segment));
+		}
+
+		boolean isIncluded() {
+			return (includeAll || include.accepts(includes)) && !exclude.accepts(excludes);
+		}
+
+		boolean isPruned() {
+			return (!includeAll && !include.isLive(includes)) || exclude.acceptsAllBelow(excludes);
+		}
+	}
+
+
+	private static final String ANY_SEGMENTS = "**";
+
+	private final Automaton include, exclude;
+
+	private final boolean includeAll;
+
+
+
+	private FileSetMatcher(List<String> includes, List<String> excludes) {
+		include = new Automaton(includes, false);
+		exclude = new Automaton(excludes, true);
+		includeAll = includes.isEmpty();
+	}
+
+
+
+	static FileSetMatcher compile(FileSet fileSet) {
+		return compile(fileSet.getIncludes(), fileSet.getExcludes());
+	}
+
+	static FileSetMatcher compile(List<String> includes, List<String> excludes) {
+		return new FileSetMatcher(includes, excludes);
+	}
+
+
+
+	State root() {
+		return new State(include.start(), exclude.start());
+	}
+
+	boolean matches(String path) {
+		State state = root();
+		for(String segment : path.split("/")) {
+			if(segment.isEmpty()) continue;
+			state = state.descend(segment);
+		}
+		return state.isIncluded();
+	}
+
+
+
+	private static final class Automaton {
+
+		private final List<Segment> segments = new ArrayList<>();
+
+		private final BitSet accepting = new BitSet(), anySegments = new BitSet(), acceptsAllBelow = new BitSet();
+
+		private final BitSet starts = new BitSet();
+
+		private Automaton(List<String> patterns, boolean excludeSubtrees) {
+			for(String pattern : patterns) {
+				add(normalise(pattern));
+				if(excludeSubtrees && isBare(pattern)) add(normalise(ANY_SEGMENTS + '/' + pattern.trim() + '/'));
+			}
+			for(int i = segments.size() - 1; i >= 0; i--)
+				if(anySegments.get(i) && (accepting.get(i + 1) || acceptsAllBelow.get(i + 1))) acceptsAllBelow.set(i);
+		}
+
+		private void add(String[] pattern) {
+			starts.set(segments.size());
+			for(String segment : pattern) {
+				if(ANY_SEGMENTS.equals(segment)) anySegments.set(segments.size());
+				segments.add(new Segment(segment));
+			}
+			accepting.set(segments.size());
+			segments.add(null);
+		}
+
+		private BitSet start() {
+			BitSet states = new BitSet();
+			for(int i = starts.nextSetBit(0); i >= 0; i = starts.nextSetBit(i + 1)) enter(states, i);
+			return states;
+		}
+
+		private BitSet step(BitSet states, String name) {
+			BitSet next = new BitSet();
+			for(int i = states.nextSetBit(0); i >= 0; i = states.nextSetBit(i + 1)) {
+				if(accepting.get(i)) continue;
+				if(anySegments.get(i)) enter(next, i);
+				else if(segments.get(i).matches(name)) enter(next, i + 1);
+			}
+			return next;
+		}
+
+		private void enter(BitSet states, int i) {
+			states.set(i);
+			while(anySegments.get(i)) states.set(++i);
+		}
+
+		private boolean accepts(BitSet states) {
+			return states.intersects(accepting);
+		}
+
+		private boolean acceptsAllBelow(BitSet states) {
+			return states.intersects(acceptsAllBelow);
+		}
+
+		private boolean isLive(BitSet states) {
+			for(int i = states.nextSetBit(0); i >= 0; i = states.nextSetBit(i + 1)) if(!accepting.get(i)) return true;
+			return false;
+		}
+
+		private static boolean isBare(String pattern) {
+			String p = pattern.trim().replace('\\', '/');
+			return !p.isEmpty() && p.indexOf('/') < 0;
+		}
+
+		private static String[] normalise(String pattern) {
+			String p = pattern.trim().replace('\\', '/');
+			if(p.endsWith("/")) p += ANY_SEGMENTS;
+			while(p.startsWith("/")) p = p.substring(1);
+			if(p.indexOf('/') < 0) p = ANY_SEGMENTS + '/' + p;
+
+			List<String> result = new ArrayList<>();
+			for(String segment : p.split("/+")) {
+				if(segment.isEmpty()) continue;
+				if(ANY_SEGMENTS.equals(segment) && !result.isEmpty()
+						&& ANY_SEGMENTS.equals(result.get(result.size() - 1))) continue;
+				result.add(segment);
+			}
+			return result.toArray(new String[result.size()]);
+		}
+	}
+
+	private static final class Segment {
+
+		private final String glob;
+
+		private final boolean literal;
+
+		private final String suffix;
+
+		private Segment(String glob) {
+			this.glob = glob;
+			this.literal = glob.indexOf('*') < 0 && glob.indexOf('?') < 0;
+			String tail = glob.startsWith("*") ? glob.substring(1) : null;
+			this.suffix = tail != null && tail.indexOf('*') < 0 && tail.indexOf('?') < 0 ? tail : null;
+		}
+
+		private boolean matches(String name) {
+			if(literal) return glob.equals(name);
+			if(suffix != null) return name.endsWith(suffix);
+
+			int g = 0, n = 0, star = -1, mark = 0;
+			while(n < name.length()) {
+				if(g < glob.length() && (glob.charAt(g) == '?' || glob.charAt(g) == name.charAt(n))) {
+					g++;
+					n++;
+				} else if(g < glob.length() && glob.charAt(g) == '*') {
+					star = g++;
+					mark = n;
+				} else if(star >= 0) {
+					g = star + 1;
+					n = ++mark;
+				} else return false;
+			}
+			while(g < glob.length() && glob.charAt(g) == '*') g++;
+			return g == glob.length();
+		}
+	}
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2014 Computing Distribution Group Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.groupcdg.maven.tidesdk;
+
+import org.apache.maven.model.FileSet;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Map;
+
+/**
+ * Digest of everything the output of the generate goal depends on. Configuration objects of this
+ * plugin are taken field by field, so new settings are covered without listing them here, and
+ * source files by path, size and modification time so that no content needs to be read. The
+ * plugin's own classes are covered the same way, so a rebuilt snapshot of the plugin regenerates.
+ */
+final class Fingerprint {
+
+	private static final int VERSION = 1;
+
+	private static final Package PACKAGE = Fingerprint.class.getPackage();
+
+	private static final String BUILD = build();
+
+	private static final Comparator<Field> BY_NAME = new Comparator<Field>() {
+		@Override
+		public int compare(Field a, Field b) {
+			return a.getName().compareTo(b.getName());
+		}
+	};
+
+	private final MessageDigest digest = Checksums.digest();
+
+
+
+	Fingerprint() {
+		add("fingerprint", VERSION);
+		add("build", BUILD);
+	}
+
+
+
+	Fingerprint add(String key, Object value) {
+		update(key);
+		update("=");
+		append(value);
+		update("\n");
+		return this;
+	}
+
+	Fingerprint addFiles(Map<String, File> files) {
+		for(Map.Entry<String, File> file : files.entrySet()) {
+			update(file.getKey());
+			update("\0" + file.getValue().getAbsolutePath() + '\0' + file.getValue().length()
+					+ '\0' + file.getValue().lastModified() + '\n');
+		}
+		return this;
+	}
+
+	String get() {
+		return Checksums.hex(digest.digest());
+	}
+
+
+
+	private static String build() {
+		CodeSource source = Fingerprint.class.getProtectionDomain().getCodeSource();
+		if(source == null) return null;
+		try {
+			File location = new File(source.getLocation().toURI());
+			return location.getAbsolutePath() + '\0' + location.length() + '\0' + location.lastModified();
+		} catch (URISyntaxException | IllegalArgumentException e) {
+			return source.getLocation().toString();
+		}
+	}
+
+	private void append(Object value) {
+		if(value == null) update("\0");
+		else if(value instanceof Collection) {
+			update("[");
+			for(Object item : (Collection<?>) value) {
+				append(item);
+				update(",");
+			}
+			update("]");
+		}
+		else if(value instanceof File) update(((File) value).getAbsolutePath());
+		else if(value instanceof FileSet || value.getClass().getPackage() == PACKAGE && !(value instanceof Enum))
+			appendFields(value);
+		else update(String.valueOf(value));
+	}
+
+	private void appendFields(Object value) {
+		update(value.getClass().getSimpleName());
+		update("{");
+		for(Class<?> type = value.getClass(); type.getPackage() == PACKAGE; type = type.getSuperclass()) {
+			Field[] fields = type.getDeclaredFields();
+			Arrays.sort(fields, BY_NAME);
+			for(Field field : fields) {
+				if(Modifier.isStatic(field.getModifiers()) || field.isSynthetic()) continue;
+				field.setAccessible(true);
+				update(field.getName());
+				update("=");
+				try {
+					append(field.get(value));
+				} catch (IllegalAccessException e) {
+					throw new IllegalStateException(e);
+				}
+				update(";");
+			}
+		}
+		if(value instanceof FileSet) {
+			FileSet fileSet = (FileSet) value;
+			update("directory=");
+			append(fileSet.getDirectory());
+			update(";includes=");
+			append(fileSet.getIncludes());
+			update(";excludes=");
+			append(fileSet.getExcludes());
+		}
+		update("}");
+	}
+
+	private void update(String text) {
+		digest.update(text.getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -17,128 +17,476 @@
 package com.groupcdg.maven.tidesdk;
 
 import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.filefilter.IOFileFilter;
-import org.apache.commons.io.filefilter.WildcardFileFilter;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.model.Dependency;
 import org.apache.maven.model.FileSet;
 import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
 import org.apache.maven.project.MavenProject;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.resolution.ArtifactRequest;
+import org.eclipse.aether.resolution.ArtifactResolutionException;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
-import static org.apache.commons.io.FileUtils.copyDirectory;
-import static org.apache.commons.io.filefilter.FileFilterUtils.*;
-
-@Mojo(name = "generate", defaultPhase = LifecyclePhase.GENERATE_RESOURCES)
+@Mojo(name = "generate", defaultPhase = LifecyclePhase.GENERATE_RESOURCES, threadSafe = true,
+		requiresDependencyResolution = ResolutionScope.RUNTIME)
 public class GenerateMojo extends AbstractTidesdkMojo {
 
 
-	private static final String RESOURCES_DIRECTORY = "resources";
+	private static final String GENERATE = "generate";
+
+	static final String RESOURCES_DIRECTORY = "Resources";
+
+	private static final String STAGING_MANIFEST = "staging.manifest";
+
+	private static final String ASSET_CACHE = "asset-cache";
+
+	private static final String FINGERPRINT = "generate.fingerprint";
+
+	private static final String INITIAL_WINDOW = "initial", WINDOW = "window";
+
+	private static final int DESCRIPTOR_BUFFER_SIZE = 4096;
 
 	private static final String GENERATE_RESOURCES_ERROR_MESSAGE = "Failed to generate resources";
 
+	@Parameter(property = "validateSdk", defaultValue = "false")
+	private boolean validateSdk;
+
+	@Parameter(property = "skipIfUpToDate", defaultValue = "true")
+	private boolean skipIfUpToDate;
+
+	@Parameter
+	private List<ArtifactSet> artifactSets;
+
+	@Parameter(property = "artifactCacheDirectory", defaultValue = "${user.home}/.tidesdk/artifact-cache")
+	private File artifactCacheDirectory;
+
+	@Component
+	private RepositorySystem repositorySystem;
+
+	@Parameter(defaultValue = "${plugin.version}", readonly = true)
+	private String pluginVersion;
+
+	@Parameter(defaultValue = "${repositorySystemSession}", readonly = true)
+	private RepositorySystemSession repositorySystemSession;
+
+	@Parameter(defaultValue = "${project.remoteProjectRepositories}", readonly = true)
+	private List<RemoteRepository> remoteRepositories;
+
+
+
+	public void setValidateSdk(boolean validateSdk) {
+		this.validateSdk = validateSdk;
+	}
+
+	public void setSkipIfUpToDate(boolean skipIfUpToDate) {
+		this.skipIfUpToDate = skipIfUpToDate;
+	}
+
+	public void setArtifactSets(List<ArtifactSet> artifactSets) {
+		this.artifactSets = artifactSets;
+	}
+
+	public void setArtifactCacheDirectory(File artifactCacheDirectory) {
+		this.artifactCacheDirectory = artifactCacheDirectory;
+	}
+
 
 
 	public void execute() throws MojoExecutionException {
+		checkSdk();
+		generate(new Metrics(GENERATE), !isIncremental(), true);
+	}
+
+
+
+	protected void generate(Metrics metrics, boolean clean, boolean descriptors) throws MojoExecutionException {
 		try {
 			final File outputDirectory = getOutputDirectory();
+			final File fingerprintFile = new File(getTidesdkDirectory(), FINGERPRINT);
+			final Map<String, File> resources = prepare(metrics);
+
+			String fingerprint = null;
+			if(skipIfUpToDate && descriptors) try (Metrics.Phase phase = metrics.start("fingerprint")) {
+				fingerprint = fingerprint(resources);
+				boolean upToDate = isUpToDate(fingerprintFile, fingerprint);
+				phase.set("upToDate", upToDate);
+				if(upToDate) {
+					getLog().info("Generated application is up to date");
+					return;
+				}
+			}
+			Files.deleteIfExists(fingerprintFile.toPath());
 
-			if(outputDirectory.exists())
-				org.codehaus.plexus.util.FileUtils.deleteDirectory(outputDirectory);
-			if (!outputDirectory.mkdirs())
-				throw new MojoExecutionException( CREATE_DIRECTORY_ERROR_MESSAGE + outputDirectory.getAbsolutePath());
+			if(clean) try (Metrics.Phase phase = metrics.start("clean")) {
+				if(outputDirectory.exists())
+					org.codehaus.plexus.util.FileUtils.deleteDirectory(outputDirectory);
+				StagingManifest.delete(getStagingManifest());
+			}
+			createDirectory(outputDirectory);
+			createDirectory(getTidesdkDirectory());
 
-			create(outputDirectory, prepare());
-		} catch (IOException | InterruptedException e) {
+			create(outputDirectory, resources, descriptors, metrics);
+			if(fingerprint != null) FileUtils.writeStringToFile(fingerprintFile,
+					fingerprint + '\n' + snapshot(new File(outputDirectory, RESOURCES_DIRECTORY)), StandardCharsets.UTF_8.name());
+		} catch (IOException e) {
 			throw new MojoExecutionException(GENERATE_RESOURCES_ERROR_MESSAGE, e);
+		} finally {
+			report(metrics);
 		}
 	}
 
 
 
-	private File prepare() throws IOException {
-		File resourcesDirectory = new File(getTidesdkDirectory(), RESOURCES_DIRECTORY);
-		resourcesDirectory.mkdir();
+	private String fingerprint(Map<String, File> resources) throws MojoExecutionException {
+		MavenProject project = getProject();
+		Date timestamp = getOutputTimestamp();
+		return new Fingerprint()
+				.add("plugin", pluginVersion)
+				.add("outputDirectory", getOutputDirectory())
+				.add("name", getName())
+				.add("sdkVersion", getSdkVersion())
+				.add("icon", getIcon())
+				.add("index", getIndex())
+				.add("windows", getWindows())
+				.add("modules", getModules())
+				.add("detectModules", isDetectModules())
+				.add("extraModules", getExtraModules())
+				.add("properties", getProperties())
+				.add("fileSets", getFileSets())
+				.add("artifactSets", artifactSets)
+				.add("stagingStrategy", getStagingStrategy())
+				.add("minify", isMinify() ? AssetProcessor.getOptions() : null)
+				.add("packResources", isPackResources())
+				.add("unpackedResources", getUnpackedResources())
+				.add("guid", getGuid())
+				.add("timestamp", timestamp != null ? timestamp.getTime() : null)
+				.add("year", getYear(timestamp))
+				.add("project", project.getGroupId() + ':' + project.getArtifactId() + ':' + project.getVersion())
+				.add("description", project.getDescription())
+				.add("publisher", getPublisher(project))
+				.add("url", getUrl(project))
+				.addFiles(resources)
+				.get();
+	}
 
-		for(FileSet fileSet : getFileSets())
-			copyDirectory(new File(fileSet.getDirectory()), resourcesDirectory, createFilter(fileSet));
+	private boolean isUpToDate(File fingerprintFile, String fingerprint) throws IOException {
+		File outputDirectory = getOutputDirectory();
+		File resourcesDirectory = new File(outputDirectory, RESOURCES_DIRECTORY);
+		if(!fingerprintFile.isFile() || !new File(outputDirectory, "manifest").isFile()
+				|| !new File(outputDirectory, "tiapp.xml").isFile() || !resourcesDirectory.isDirectory()) return false;
+		List<String> recorded = FileUtils.readLines(fingerprintFile, StandardCharsets.UTF_8.name());
+		return recorded.size() == 2 && fingerprint.equals(recorded.get(0)) && snapshot(resourcesDirectory).equals(recorded.get(1));
+	}
 
-		return resourcesDirectory;
+	private static String snapshot(File resourcesDirectory) throws IOException {
+		Map<String, File> staged = new TreeMap<>();
+		collect(resourcesDirectory, "", FileSetMatcher.compile(Collections.<String>emptyList(),
+				Collections.<String>emptyList()).root(), staged);
+		return new Fingerprint().addFiles(staged).get();
 	}
 
-	private void create(final File outputDirectory, final File resourcesDirectory) throws IOException, InterruptedException {
-		FileUtils.copyDirectory(resourcesDirectory, new File(outputDirectory, "Resources"));
-		FileUtils.writeLines(new File(outputDirectory, "manifest"), createManifest());
-		FileUtils.writeLines(new File(outputDirectory, "tiapp.xml"), createXml());
+	protected void checkSdk() throws MojoExecutionException {
+		try {
+			resolveSdk(OS.system());
+		} catch (MojoExecutionException e) {
+			if(validateSdk) throw e;
+			getLog().warn(e.getMessage() + ". The build goal will fail until this is fixed");
+		}
 	}
 
-	private IOFileFilter createFilter(final FileSet fileSet) {
-		List<IOFileFilter> includes = new ArrayList<IOFileFilter>() {{
-			for(String inc : fileSet.getIncludes()) add(new WildcardFileFilter(inc));
-		}};
-		List<IOFileFilter> excludes = new ArrayList<IOFileFilter>() {{
-			for(String ex : fileSet.getExcludes()) add(new WildcardFileFilter(ex));
-		}};
-		IOFileFilter include = includes.isEmpty() ? trueFileFilter()
-				: or(directoryFileFilter(), or(includes.toArray(new IOFileFilter[includes.size()])));
-		return excludes.isEmpty() ? include
-				: and(include, notFileFilter(or(excludes.toArray(new IOFileFilter[excludes.size()]))));
+	private Map<String, File> prepare(Metrics metrics) throws IOException, MojoExecutionException {
+		try (Metrics.Phase phase = metrics.start("prepare")) {
+			Map<String, File> resources = new LinkedHashMap<>();
+			if(artifactSets != null && !artifactSets.isEmpty()) {
+				ArtifactExtractor extractor = new ArtifactExtractor(artifactCacheDirectory);
+				for(ArtifactSet artifactSet : artifactSets) {
+					File directory = new File(extractor.extract(resolve(artifactSet)),
+							artifactSet.getDirectory() == null ? "" : artifactSet.getDirectory());
+					if(!directory.isDirectory()) throw new FileNotFoundException("Directory '" + artifactSet.getDirectory()
+							+ "' does not exist in " + artifactSet.getCoordinates());
+					collect(directory, artifactSet.getPrefix(), FileSetMatcher.compile(artifactSet).root(), resources);
+				}
+				phase.set("artifactsExtracted", extractor.getExtracted()).set("artifactsCached", extractor.getCached());
+			}
+			for(FileSet fileSet : getFileSets()) {
+				File directory = new File(fileSet.getDirectory());
+				if(!directory.isDirectory()) throw new FileNotFoundException("Source '" + directory + "' does not exist");
+				collect(directory, "", FileSetMatcher.compile(fileSet).root(), resources);
+			}
+			phase.set(Metrics.FILES, resources.size());
+			return resources;
+		}
 	}
 
-	private Collection<String> createManifest() {
-		MavenProject project = getProject();
+	private File resolve(ArtifactSet artifactSet) throws MojoExecutionException {
+		if(artifactSet.getGroupId() == null || artifactSet.getArtifactId() == null)
+			throw new MojoExecutionException("Every artifactSets entry needs a groupId and artifactId");
+		String version = artifactSet.getVersion();
+		for(Artifact artifact : getProject().getArtifacts())
+			if(matches(artifactSet, artifact.getGroupId(), artifact.getArtifactId(), artifact.getType(), artifact.getClassifier())
+					&& (version == null || version.equals(artifact.getVersion())) && artifact.getFile() != null)
+				return artifact.getFile();
 
-		return Arrays.asList(
-				"#appname: " + getEscapedName(),
-				"#publisher: " + getPublisher(project),
-				"#url: " + getUrl(project),
-				"#image: " + getIcon(),
-				"#appid: " + project.getGroupId() + '.' + project.getArtifactId(),
-				"#desc: " + project.getDescription(),
-				"#type: desktop",
-				"#guid: " + UUID.randomUUID(),
-				"runtime:" + getSdkVersion(),
-				"app:" + getSdkVersion(),
-				"codec:" + getSdkVersion(),
-				"database:" + getSdkVersion(),
-				"filesystem:" + getSdkVersion(),
-				"media:" + getSdkVersion(),
-				"monkey:" + getSdkVersion(),
-				"network:" + getSdkVersion(),
-				"platform:" + getSdkVersion(),
-				"process:" + getSdkVersion(),
-				"ui:" + getSdkVersion(),
-				"worker:" + getSdkVersion()
-		);
-	}
-
-	private Collection<String> createXml() {
-		return new ArrayList<String>() {{
-			add("<?xml version='1.0' encoding='UTF-8'?>");
-			add("<ti:app xmlns:ti='http://ti.appcelerator.org'>");
-
-			MavenProject project = getProject();
-			add("<id>" + project.getGroupId() + '.' + project.getArtifactId() + "</id>");
-			add("<name>" + getName() + "</name>");
-			add("<version>" + project.getVersion() + "</version>");
-
-			String publisher = getPublisher(project);
-			if(publisher != null) {
-				add("<publisher>" + publisher + "</publisher>");
-				add("<copyright>" + Calendar.getInstance().get(Calendar.YEAR) + " " + publisher + "</copyright>");
+		if(version == null) for(Dependency dependency : getDependencies())
+			if(matches(artifactSet, dependency.getGroupId(), dependency.getArtifactId(), dependency.getType(), dependency.getClassifier())) {
+				version = dependency.getVersion();
+				break;
 			}
-			String url = getUrl(project);
-			if(url != null) add("<url>" + url + "</url>");
+		if(version == null) throw new MojoExecutionException("No version given or managed for " + artifactSet.getCoordinates());
+		if(repositorySystem == null || repositorySystemSession == null)
+			throw new MojoExecutionException("Cannot resolve " + artifactSet.getCoordinates() + " without a repository session");
+
+		ArtifactRequest request = new ArtifactRequest(new DefaultArtifact(artifactSet.getGroupId(), artifactSet.getArtifactId(),
+				artifactSet.getClassifier(), artifactSet.getType(), version), remoteRepositories, null);
+		try {
+			return repositorySystem.resolveArtifact(repositorySystemSession, request).getArtifact().getFile();
+		} catch (ArtifactResolutionException e) {
+			throw new MojoExecutionException("Failed to resolve " + artifactSet.getCoordinates(), e);
+		}
+	}
 
-			String icon = getIcon();
-			if(icon != null) add("<icon>" + icon + "</icon>");
-			addAll(getDisplay().createXml(getName(), getIndex()));
+	private List<Dependency> getDependencies() {
+		List<Dependency> dependencies = new ArrayList<>(getProject().getDependencies());
+		if(getProject().getDependencyManagement() != null)
+			dependencies.addAll(getProject().getDependencyManagement().getDependencies());
+		return dependencies;
+	}
+
+	private static boolean matches(ArtifactSet artifactSet, String groupId, String artifactId, String type, String classifier) {
+		return artifactSet.getGroupId().equals(groupId) && artifactSet.getArtifactId().equals(artifactId)
+				&& artifactSet.getType().equals(type == null ? "jar" : type)
+				&& artifactSet.getClassifier().equals(classifier == null ? "" : classifier);
+	}
+
+	private void create(final File outputDirectory, final Map<String, File> resources, final boolean descriptors,
+			final Metrics metrics) throws IOException, MojoExecutionException {
+		final File resourcesDirectory = new File(outputDirectory, RESOURCES_DIRECTORY);
+		final AssetProcessor processor = isMinify() ? new AssetProcessor(new File(getTidesdkDirectory(), ASSET_CACHE)) : null;
+		final Map<String, File> packed = new LinkedHashMap<>();
+		final Map<String, File> loose = isPackResources() ? split(resources, packed) : resources;
+
+		try (Metrics.Phase phase = metrics.start("stage"); CopyEngine engine = new CopyEngine(getParallelism())) {
+			ResourceStager stager = new ResourceStager(resourcesDirectory,
+					getStagingManifest(), engine, getStagingStrategy(), processor, getLog());
+			stager.stage(loose);
+			phase.set(Metrics.FILES, stager.getCopied()).set(Metrics.BYTES, stager.getBytes())
+					.set(Metrics.SKIPPED, stager.getSkipped()).set(Metrics.DELETED, stager.getDeleted());
+			if(processor != null) phase.set("minified", processor.getProcessed() + processor.getCached())
+					.set("minifyCacheHits", processor.getCached()).set("bytesSaved", processor.getSaved());
+		}
+
+		if(isPackResources()) try (Metrics.Phase phase = metrics.start("pack")) {
+			ResourcePacker packer = new ResourcePacker(resourcesDirectory, processor);
+			if(packer.pack(packed)) getLog().info("Packed " + packer.getFiles() + " resources ("
+					+ packer.getBytes() + " bytes) into " + ResourcePacker.PACK);
+			phase.set(Metrics.FILES, packer.getFiles()).set(Metrics.BYTES, packer.getBytes());
+		} else ResourcePacker.delete(resourcesDirectory);
+
+		if(descriptors) try (Metrics.Phase phase = metrics.start("descriptors")) {
+			validateDescriptors();
+			final List<String> modules = selectModules(resources);
+			final Date timestamp = getOutputTimestamp();
+			final ByteArrayOutputStream buffer = new ByteArrayOutputStream(DESCRIPTOR_BUFFER_SIZE);
+			DescriptorWriter writer = new DescriptorWriter(buffer);
+			writeManifest(writer, timestamp, modules);
+			writer.flush();
+			int written = write(new File(outputDirectory, "manifest"), buffer);
+
+			buffer.reset();
+			writeXml(writer, timestamp);
+			writer.flush();
+			phase.set(Metrics.FILES, written + write(new File(outputDirectory, "tiapp.xml"), buffer))
+					.set("modules", modules.size());
+		}
+	}
+
+	private Map<String, File> split(Map<String, File> resources, Map<String, File> packed) {
+		FileSetMatcher unpacked = getUnpackedResources().isEmpty() ? null
+				: FileSetMatcher.compile(getUnpackedResources(), Collections.<String>emptyList());
+		Map<String, File> loose = new LinkedHashMap<>();
+		for(Map.Entry<String, File> resource : resources.entrySet()) {
+			String path = resource.getKey();
+			if(path.equals(getIndex()) || path.equals(getIcon()) || unpacked != null && unpacked.matches(path))
+				loose.put(path, resource.getValue());
+			else packed.put(path, resource.getValue());
+		}
+		return loose;
+	}
+
+	private List<String> selectModules(Map<String, File> resources) throws IOException, MojoExecutionException {
+		List<String> modules = new ArrayList<>(ModuleDetector.REQUIRED_MODULES);
+		for(String module : getModules()) {
+			if(!ModuleDetector.STANDARD_MODULES.contains(module)) throw new MojoExecutionException("Unknown TideSDK module '"
+					+ module + "', expected one of " + ModuleDetector.STANDARD_MODULES + ". Use extraModules for other modules");
+			if(!modules.contains(module)) modules.add(module);
+		}
+		if(!isDetectModules()) return modules;
+
+		List<File> sources = new ArrayList<>();
+		for(Map.Entry<String, File> resource : resources.entrySet())
+			if(ModuleDetector.accepts(resource.getKey())) sources.add(resource.getValue());
+		ModuleDetector detector = new ModuleDetector();
+		if(isPackResources()) detector.scanResource(ResourcePacker.SHIM);
+		Set<String> used;
+		try (CopyEngine engine = new CopyEngine(getParallelism())) {
+			used = detector.detect(sources, engine);
+		}
+		if(detector.isDynamic()) {
+			getLog().warn("Computed Ti[...] access found, keeping all configured modules");
+			return modules;
+		}
+		List<String> omitted = new ArrayList<>();
+		for(Iterator<String> i = modules.iterator(); i.hasNext(); ) {
+			String module = i.next();
+			if(!used.contains(module)) {
+				omitted.add(module);
+				i.remove();
+			}
+		}
+		if(!omitted.isEmpty()) getLog().info("Modules not referenced by " + detector.getScanned()
+				+ " scripts and pages, omitted from the manifest: " + omitted);
+		return modules;
+	}
+
+	private void validateDescriptors() throws MojoExecutionException {
+		for(RuntimeModule module : getExtraModules())
+			if(module.getName() == null || module.getName().trim().isEmpty())
+				throw new MojoExecutionException("Every extraModules entry needs a name");
+		for(Property property : getProperties())
+			if(property.getName() == null || property.getName().trim().isEmpty())
+				throw new MojoExecutionException("Every properties entry needs a name");
+	}
+
+	private int write(File file, ByteArrayOutputStream content) throws IOException {
+		if(file.isFile() && file.length() == content.size()
+				&& Arrays.equals(content.toByteArray(), FileUtils.readFileToByteArray(file))) return 0;
+		try (OutputStream out = new FileOutputStream(file)) {
+			content.writeTo(out);
+		}
+		return 1;
+	}
+
+	private File getStagingManifest() {
+		return new File(getTidesdkDirectory(), STAGING_MANIFEST);
+	}
+
+	static void collect(File directory, final String prefix, final FileSetMatcher.State state,
+			final Map<String, File> sources) throws IOException {
+		final Path root = directory.toPath();
+		final Deque<FileSetMatcher.State> states = new ArrayDeque<>();
+		final StringBuilder path = new StringBuilder(prefix);
+
+		Files.walkFileTree(root, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+				if(states.isEmpty()) {
+					states.push(state);
+					return FileVisitResult.CONTINUE;
+				}
+				String name = dir.getFileName().toString();
+				FileSetMatcher.State child = states.peek().descend(name);
+				if(child.isPruned()) return FileVisitResult.SKIP_SUBTREE;
+				states.push(child);
+				path.append(name).append('/');
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+				String name = file.getFileName().toString();
+				if(states.peek().descend(name).isIncluded()) {
+					int length = path.length();
+					sources.put(path.append(name).toString(), file.toFile());
+					path.setLength(length);
+				}
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+				if(e != null) throw e;
+				states.pop();
+				if(!states.isEmpty()) path.setLength(path.length() - dir.getFileName().toString().length() - 1);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	void writeManifest(DescriptorWriter manifest, Date timestamp, Collection<String> modules) throws IOException {
+		MavenProject project = getProject();
+
+		manifest.header("appname", getEscapedName())
+				.header("publisher", getPublisher(project))
+				.header("url", getUrl(project))
+				.header("image", getIcon())
+				.header("appid", project.getGroupId() + '.' + project.getArtifactId())
+				.header("desc", project.getDescription())
+				.header("type", "desktop")
+				.header("guid", getGuid(project, timestamp));
+		for(String module : modules) manifest.entry(module, getSdkVersion());
+		for(RuntimeModule module : getExtraModules())
+			manifest.entry(module.getName(), module.getVersion() != null ? module.getVersion() : getSdkVersion());
+	}
+
+	void writeXml(DescriptorWriter xml, Date timestamp) throws IOException {
+		MavenProject project = getProject();
+		xml.declaration().start("ti:app", "xmlns:ti", "http://ti.appcelerator.org")
+				.element("id", project.getGroupId() + '.' + project.getArtifactId())
+				.element("name", getName())
+				.element("version", project.getVersion());
+
+		String publisher = getPublisher(project);
+		if(publisher != null) xml.element("publisher", publisher)
+				.element("copyright", getYear(timestamp) + " " + publisher);
+		xml.element("url", getUrl(project))
+				.element("icon", getIcon());
+
+		List<Display> windows = getWindows();
+		for(int i = 0; i < windows.size(); i++)
+			windows.get(i).write(xml, i == 0 ? INITIAL_WINDOW : WINDOW + (i + 1), getName(), getIndex());
+
+		if(isPackResources()) xml.element("property", ResourcePacker.PACK, "name", "tidepack.pack", "type", "string")
+				.element("property", ResourcePacker.INDEX, "name", "tidepack.index", "type", "string")
+				.element("property", "app://" + ResourcePacker.SHIM, "name", "tidepack.loader", "type", "string");
+		for(Property property : getProperties()) property.write(xml);
+
+		xml.end("ti:app");
+	}
+
+	private String getGuid(MavenProject project, Date timestamp) {
+		if(getGuid() != null) return getGuid();
+		return timestamp == null ? UUID.randomUUID().toString()
+				: UUID.nameUUIDFromBytes((project.getGroupId() + ':' + project.getArtifactId())
+						.getBytes(StandardCharsets.UTF_8)).toString();
+	}
 
-			add("</ti:app>");
-		}};
+	private int getYear(Date timestamp) {
+		if(timestamp == null) return Calendar.getInstance().get(Calendar.YEAR);
+		Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+		calendar.setTime(timestamp);
+		return calendar.get(Calendar.YEAR);
 	}
 
 	private String getPublisher(MavenProject project) {
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2014 Computing Distribution Group Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.groupcdg.maven.tidesdk;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Wall time and I/O counters recorded per phase of a goal, written as a JSON
+ * report and summarised in the Maven log.
+ */
+final class Metrics {
+
+	final class Phase implements AutoCloseable {
+
+		private final String name;
+
+		private final long start = System.nanoTime();
+
+		private final Map<String, Object> values = new LinkedHashMap<>();
+
+		private Phase(String name) {
+			this.name = name;
+		}
+
+		Phase set(String key, Object value) {
+			synchronized (values) {
+				values.put(key, value);
+			}
+			return this;
+		}
+
+		@Override
+		public void close() {
+			long wall = (System.nanoTime() - start) / 1000000L;
+			synchronized (values) {
+				values.put(WALL_MILLIS, wall);
+			}
+			synchronized (phases) {
+				phases.add(this);
+			}
+		}
+	}
+
+
+	static final String FILES = "files", BYTES = "bytes", SKIPPED = "skipped", DELETED = "deleted",
+			EXIT_CODE = "exitCode";
+
+	private static final String WALL_MILLIS = "wallMillis";
+
+	private final String goal;
+
+	private final long start = System.nanoTime();
+
+	private final List<Phase> phases = new ArrayList<>();
+
+
+
+	Metrics(String goal) {
+		this.goal = goal;
+	}
+
+
+
+	String getGoal() {
+		return goal;
+	}
+
+	Phase start(String name) {
+		return new Phase(name);
+	}
+
+	void write(File file) throws IOException {
+		StringBuilder json = new StringBuilder("{\n")
+				.append("  \"goal\": ").append(Json.quote(goal)).append(",\n")
+				.append("  \"timestamp\": ").append(Json.quote(timestamp())).append(",\n")
+				.append("  \"wallMillis\": ").append(elapsed()).append(",\n")
+				.append("  \"phases\": [");
+		synchronized (phases) {
+			for(int i = 0; i < phases.size(); i++) {
+				Phase phase = phases.get(i);
+				json.append(i == 0 ? "\n" : ",\n").append("    {\"name\": ").append(Json.quote(phase.name));
+				synchronized (phase.values) {
+					for(Map.Entry<String, Object> value : phase.values.entrySet())
+						json.append(", ").append(Json.quote(value.getKey())).append(": ").append(value(value.getValue()));
+				}
+				json.append('}');
+			}
+		}
+		json.append("\n  ]\n}\n");
+		FileUtils.writeStringToFile(file, json.toString(), StandardCharsets.UTF_8.name());
+	}
+
+	void summarise(Log log) {
+		if(!log.isInfoEnabled()) return;
+		StringBuilder sb = new StringBuilder(goal).append(" timings:");
+		synchronized (phases) {
+			for(Phase phase : phases) synchronized (phase.values) {
+				sb.append(' ').append(phase.name).append('=').append(phase.values.get(WALL_MILLIS)).append("ms");
+				Object files = phase.values.get(FILES), bytes = phase.values.get(BYTES);
+				if(files != null) sb.append(" (").append(files).append(" files")
+						.append(bytes != null ? ", " + bytes + " bytes)" : ")");
+				sb.append(';');
+			}
+		}
+		log.info(sb.append(" total=").append(elapsed()).append("ms"));
+	}
+
+
+
+	private long elapsed() {
+		return (System.nanoTime() - start) / 1000000L;
+	}
+
+	private static String timestamp() {
+		return timestamp(new Date());
+	}
+
+	static String timestamp(Date date) {
+		SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.ROOT);
+		format.setTimeZone(TimeZone.getTimeZone("UTC"));
+		return format.format(date);
+	}
+
+	private static String value(Object value) {
+		return value instanceof Number || value instanceof Boolean ? String.valueOf(value) : Json.quote(String.valueOf(value));
+	}
+}
@@ -0,0 +1,364 @@
+/*
+ * Copyright 2014 Computing Distribution Group Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.groupcdg.maven.tidesdk;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Conservative, dependency-free asset optimisers. The text minifiers only remove comments and
+ * redundant whitespace and never rename or reorder code; line breaks in JavaScript are kept so
+ * that automatic semicolon insertion behaves as before, and wherever a slash could start either a
+ * regular expression or a division the rest of the line is kept unchanged. HTML comments are kept
+ * since templating libraries bind to them. Text that is not valid UTF-8 is left untouched. PNG
+ * optimisation is lossless and only drops textual and timestamp metadata chunks.
+ */
+enum Minifier {
+
+	js("js") {
+		@Override
+		byte[] process(byte[] content) {
+			String text = decode(content);
+			return text == null ? content : utf8(minifyJs(text));
+		}
+	},
+
+	css("css") {
+		@Override
+		byte[] process(byte[] content) {
+			String text = decode(content);
+			return text == null ? content : utf8(minifyCss(text));
+		}
+	},
+
+	html("html", "htm") {
+		@Override
+		byte[] process(byte[] content) {
+			String text = decode(content);
+			return text == null ? content : utf8(minifyHtml(text));
+		}
+	},
+
+	png("png") {
+		@Override
+		byte[] process(byte[] content) {
+			return stripPng(content);
+		}
+	};
+
+
+	static final int VERSION = 3;
+
+	private static final Set<String> REGEX_KEYWORDS = new HashSet<>(Arrays.asList(
+			"return", "typeof", "instanceof", "in", "of", "new", "delete", "void", "throw", "case", "do", "else"));
+
+	private static final Pattern PRESERVED_WHITESPACE = Pattern.compile(
+			"\\bstyle\\s*=\\s*(['\"])[^'\"]*white-space\\s*:\\s*(pre|break-spaces)", Pattern.CASE_INSENSITIVE);
+
+	private static final Set<String> VERBATIM_ELEMENTS = new HashSet<>(Arrays.asList(
+			"pre", "textarea", "script", "style"));
+
+	private static final Set<String> PNG_METADATA_CHUNKS = new HashSet<>(Arrays.asList(
+			"tEXt", "zTXt", "iTXt", "tIME"));
+
+	private static final byte[] PNG_SIGNATURE = { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n' };
+
+	private final String[] extensions;
+
+
+
+	Minifier(String... extensions) {
+		this.extensions = extensions;
+	}
+
+
+
+	static Minifier forPath(String path) {
+		int dot = path.lastIndexOf('.');
+		if(dot < 0 || path.lastIndexOf('/') > dot) return null;
+		String extension = path.substring(dot + 1).toLowerCase(Locale.ROOT);
+		if(path.toLowerCase(Locale.ROOT).endsWith(".min." + extension)) return null;
+		for(Minifier minifier : values()) for(String e : minifier.extensions) if(e.equals(extension)) return minifier;
+		return null;
+	}
+
+	abstract byte[] process(byte[] content);
+
+
+
+	private static byte[] utf8(String s) {
+		return s.getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static String decode(byte[] content) {
+		try {
+			return StandardCharsets.UTF_8.newDecoder().onMalformedInput(CodingErrorAction.REPORT)
+					.onUnmappableCharacter(CodingErrorAction.REPORT).decode(ByteBuffer.wrap(content)).toString();
+		} catch (CharacterCodingException e) {
+			return null;
+		}
+	}
+
+	static String minifyJs(String src) {
+		StringBuilder out = new StringBuilder(src.length());
+		boolean space = false, newline = false;
+		int i = 0, n = src.length();
+
+		while(i < n) {
+			char c = src.charAt(i);
+
+			if(isLineTerminator(c)) {
+				newline = true;
+				i++;
+			} else if(Character.isWhitespace(c)) {
+				space = true;
+				i++;
+			} else if(c == '/' && i + 1 < n && src.charAt(i + 1) == '/') {
+				i = lineEnd(src, i);
+			} else if(c == '/' && i + 1 < n && src.charAt(i + 1) == '*') {
+				int end = src.indexOf("*/", i + 2);
+				end = end < 0 ? n : end + 2;
+				if(i + 2 < n && src.charAt(i + 2) == '!') {
+					separate(out, space, newline, '/');
+					out.append(src, i, end);
+					newline = true;
+					space = false;
+				} else if(lineEnd(src, i) < end) newline = true;
+				else space = true;
+				i = end;
+			} else {
+				separate(out, space, newline, c);
+				space = newline = false;
+				if(c == '"' || c == '\'' || c == '`') i = copyQuoted(src, i, out, c);
+				else if(c == '/' && isAmbiguousSlash(out)) {
+					int end = lineEnd(src, i);
+					String rest = src.substring(i, end);
+					if(rest.contains("/*") || rest.indexOf('`') >= 0) end = n;
+					out.append(src, i, end);
+					i = end;
+				}
+				else if(c == '/' && startsRegex(out)) i = copyRegex(src, i, out);
+				else {
+					out.append(c);
+					i++;
+				}
+			}
+		}
+		return out.toString();
+	}
+
+	static String minifyCss(String src) {
+		StringBuilder out = new StringBuilder(src.length());
+		boolean space = false;
+		int i = 0, n = src.length();
+
+		while(i < n) {
+			char c = src.charAt(i);
+			if(Character.isWhitespace(c)) {
+				space = true;
+				i++;
+			} else if(c == '/' && i + 1 < n && src.charAt(i + 1) == '*') {
+				int end = src.indexOf("*/", i + 2);
+				end = end < 0 ? n : end + 2;
+				if(i + 2 < n && src.charAt(i + 2) == '!') out.append(src, i, end);
+				else space = true;
+				i = end;
+			} else {
+				char last = out.length() == 0 ? '{' : out.charAt(out.length() - 1);
+				if(space && "{};,:".indexOf(last) < 0 && "{};,".indexOf(c) < 0) out.append(' ');
+				space = false;
+				if(c == '}' && last == ';') out.setLength(out.length() - 1);
+				if(c == '"' || c == '\'') i = copyQuoted(src, i, out, c);
+				else {
+					out.append(c);
+					i++;
+				}
+			}
+		}
+		return out.toString();
+	}
+
+	static String minifyHtml(String src) {
+		StringBuilder out = new StringBuilder(src.length());
+		int i = 0, n = src.length();
+
+		while(i < n) {
+			char c = src.charAt(i);
+			if(src.startsWith("<!--", i)) {
+				int end = src.indexOf("-->", i + 4);
+				end = end < 0 ? n : end + 3;
+				out.append(src, i, end);
+				i = end;
+			} else if(c == '<') {
+				String element = elementName(src, i + 1);
+				int end = tagEnd(src, i);
+				if(element != null && (VERBATIM_ELEMENTS.contains(element)
+						|| PRESERVED_WHITESPACE.matcher(src.substring(i, end)).find())) end = closingTag(src, end, element);
+				out.append(src, i, end);
+				i = end;
+			} else if(Character.isWhitespace(c)) {
+				boolean newline = false;
+				while(i < n && Character.isWhitespace(src.charAt(i))) newline |= src.charAt(i++) == '\n';
+				out.append(newline ? '\n' : ' ');
+			} else {
+				out.append(c);
+				i++;
+			}
+		}
+		return out.toString().trim();
+	}
+
+	static byte[] stripPng(byte[] content) {
+		if(content.length < PNG_SIGNATURE.length
+				|| !Arrays.equals(PNG_SIGNATURE, Arrays.copyOf(content, PNG_SIGNATURE.length))) return content;
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream(content.length);
+		out.write(content, 0, PNG_SIGNATURE.length);
+		int i = PNG_SIGNATURE.length;
+		while(i + 12 <= content.length) {
+			long length = ((content[i] & 0xffL) << 24) | ((content[i + 1] & 0xff) << 16)
+					| ((content[i + 2] & 0xff) << 8) | (content[i + 3] & 0xff);
+			if(length > content.length - i - 12) return content;
+			int chunk = (int) length + 12;
+			String type = new String(content, i + 4, 4, StandardCharsets.US_ASCII);
+			if(!PNG_METADATA_CHUNKS.contains(type)) out.write(content, i, chunk);
+			i += chunk;
+			if("IEND".equals(type)) return out.toByteArray();
+		}
+		return content;
+	}
+
+
+
+	private static void separate(StringBuilder out, boolean space, boolean newline, char next) {
+		if(out.length() == 0) return;
+		char last = out.charAt(out.length() - 1);
+		if(newline) {
+			if(last != '\n') out.append('\n');
+		} else if(space && (isIdentifier(last) && isIdentifier(next)
+				|| (last == '+' || last == '-') && (next == '+' || next == '-')
+				|| last == '/' && next == '/')) out.append(' ');
+	}
+
+	private static boolean isIdentifier(char c) {
+		return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '\\' || c > 0x7f;
+	}
+
+	private static boolean isAmbiguousSlash(StringBuilder out) {
+		int end = out.length();
+		while(end > 0 && Character.isWhitespace(out.charAt(end - 1))) end--;
+		return end > 0 && (out.charAt(end - 1) == ')' || out.charAt(end - 1) == '}');
+	}
+
+	private static boolean isLineTerminator(char c) {
+		return c == '\n' || c == '\r' || c == '\u2028' || c == '\u2029';
+	}
+
+	private static int lineEnd(String src, int i) {
+		int n = src.length();
+		while(i < n && !isLineTerminator(src.charAt(i))) i++;
+		return i;
+	}
+
+	private static boolean startsRegex(StringBuilder out) {
+		int end = out.length();
+		while(end > 0 && Character.isWhitespace(out.charAt(end - 1))) end--;
+		if(end == 0) return true;
+		char last = out.charAt(end - 1);
+		if(last == ')' || last == ']' || last == '}') return false;
+		if(!isIdentifier(last)) return true;
+
+		int start = end;
+		while(start > 0 && isIdentifier(out.charAt(start - 1))) start--;
+		return REGEX_KEYWORDS.contains(out.substring(start, end));
+	}
+
+	private static int copyQuoted(String src, int i, StringBuilder out, char quote) {
+		int n = src.length();
+		out.append(src.charAt(i++));
+		while(i < n) {
+			char c = src.charAt(i++);
+			out.append(c);
+			if(c == '\\' && i < n) out.append(src.charAt(i++));
+			else if(c == quote) break;
+		}
+		return i;
+	}
+
+	private static int copyRegex(String src, int i, StringBuilder out) {
+		int n = src.length();
+		boolean inClass = false;
+		out.append(src.charAt(i++));
+		while(i < n) {
+			char c = src.charAt(i++);
+			out.append(c);
+			if(c == '\\' && i < n) out.append(src.charAt(i++));
+			else if(c == '[') inClass = true;
+			else if(c == ']') inClass = false;
+			else if(c == '/' && !inClass) break;
+			else if(isLineTerminator(c)) break;
+		}
+		return i;
+	}
+
+	private static int tagEnd(String src, int i) {
+		int n = src.length();
+		char quote = 0;
+		for(i++; i < n; i++) {
+			char c = src.charAt(i);
+			if(quote != 0) {
+				if(c == quote) quote = 0;
+			}
+			else if(c == '"' || c == '\'') quote = c;
+			else if(c == '>') return i + 1;
+		}
+		return n;
+	}
+
+	private static int closingTag(String src, int i, String element) {
+		String lower = src.toLowerCase(Locale.ROOT);
+		if(VERBATIM_ELEMENTS.contains(element)) {
+			int close = lower.indexOf("</" + element, i);
+			return close < 0 ? src.length() : close;
+		}
+		for(int depth = 1; ; ) {
+			int open = lower.indexOf('<' + element, i), close = lower.indexOf("</" + element, i);
+			if(close < 0) return src.length();
+			if(open >= 0 && open < close && element.equals(elementName(lower, open + 1))) {
+				depth++;
+				i = tagEnd(src, open);
+			} else {
+				if(element.equals(elementName(lower, close + 2)) && --depth == 0) return close;
+				i = close + 2;
+			}
+		}
+	}
+
+	private static String elementName(String src, int i) {
+		int start = i, n = src.length();
+		while(i < n && Character.isLetterOrDigit(src.charAt(i))) i++;
+		return i > start ? src.substring(start, i).toLowerCase(Locale.ROOT) : null;
+	}
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2014 Computing Distribution Group Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.groupcdg.maven.tidesdk;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Finds the TideSDK modules an application uses from the {@code Ti.*} and {@code Titanium.*}
+ * namespaces referenced by its scripts and pages. Any other use of the namespace object, such as
+ * {@code Ti[name]}, an alias or passing it to a function, makes the usage unknowable, in which
+ * case every module is reported as used. Modules in
+ * {@link #IMPLICIT_MODULES} act without being referenced and are never reported as unused.
+ */
+final class ModuleDetector {
+
+	static final List<String> STANDARD_MODULES = Collections.unmodifiableList(Arrays.asList(
+			"runtime", "app", "codec", "database", "filesystem", "media", "monkey", "network", "platform", "process", "ui", "worker"));
+
+	static final List<String> REQUIRED_MODULES = Collections.unmodifiableList(Arrays.asList("runtime", "app"));
+
+	static final List<String> IMPLICIT_MODULES = Collections.unmodifiableList(Arrays.asList("monkey"));
+
+	private static final Pattern REFERENCE = Pattern.compile("(?<![\\w$])(?:Ti|Titanium)(?![\\w$])(?:\\s*\\.\\s*([A-Za-z_$][\\w$]*))?");
+
+	private static final String API_NAMESPACE = "api";
+
+	private final Set<String> used = ConcurrentHashMap.newKeySet();
+
+	private final AtomicBoolean dynamic = new AtomicBoolean();
+
+	private int scanned;
+
+
+
+	static boolean accepts(String path) {
+		String name = path.toLowerCase(Locale.ROOT);
+		return name.endsWith(".js") || name.endsWith(".html") || name.endsWith(".htm");
+	}
+
+
+
+	Set<String> detect(Collection<File> sources, CopyEngine engine) throws IOException {
+		List<File> files = new ArrayList<>(sources);
+		scanned = files.size();
+		engine.forEach(files, new CopyEngine.Action<File>() {
+			@Override
+			public void apply(int index, File file) throws IOException {
+				if(!dynamic.get()) scan(new String(Files.readAllBytes(file.toPath()), StandardCharsets.ISO_8859_1));
+			}
+		});
+		if(dynamic.get()) return Collections.unmodifiableSet(new LinkedHashSet<>(STANDARD_MODULES));
+		used.addAll(REQUIRED_MODULES);
+		used.addAll(IMPLICIT_MODULES);
+		return Collections.unmodifiableSet(used);
+	}
+
+	void scanResource(String name) throws IOException {
+		try (InputStream in = ModuleDetector.class.getResourceAsStream(name)) {
+			if(in == null) throw new IOException("Missing resource " + name);
+			scan(IOUtils.toString(in, StandardCharsets.ISO_8859_1));
+		}
+	}
+
+	boolean isDynamic() {
+		return dynamic.get();
+	}
+
+	int getScanned() {
+		return scanned;
+	}
+
+
+
+	void scan(CharSequence content) {
+		Matcher matcher = REFERENCE.matcher(content);
+		while(matcher.find()) {
+			String namespace = matcher.group(1);
+			if(namespace == null) {
+				dynamic.set(true);
+				return;
+			}
+			String module = namespace.toLowerCase(Locale.ROOT);
+			if(module.equals(API_NAMESPACE)) used.add(REQUIRED_MODULES.get(0));
+			else if(STANDARD_MODULES.contains(module)) used.add(module);
+		}
+	}
+}
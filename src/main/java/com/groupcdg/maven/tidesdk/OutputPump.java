@@ -0,0 +1,121 @@
+/*
+ * Copyright 2014 Computing Distribution Group Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.groupcdg.maven.tidesdk;
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Drains one output stream of a child process on its own thread, forwarding every line to the
+ * Maven log as it arrives and appending it to a log file, which is compressed into a numbered
+ * segment and started afresh whenever it grows beyond the segment size. Without a Maven log the
+ * lines are only written to the file, and a retention limits how many segments are kept.
+ */
+final class OutputPump extends Thread {
+
+	private final InputStream input;
+
+	private final File file;
+
+	private final Log log;
+
+	private final String prefix;
+
+	private final boolean error;
+
+	private final long segmentBytes;
+
+	private final int retention;
+
+	private volatile IOException failure;
+
+
+
+	OutputPump(InputStream input, File file, Log log, String prefix, boolean error, long segmentBytes) {
+		this(input, file, log, prefix, error, segmentBytes, 0);
+	}
+
+	OutputPump(InputStream input, File file, Log log, String prefix, boolean error, long segmentBytes, int retention) {
+		super("tidesdk-" + prefix + (error ? "-err" : "-out"));
+		setDaemon(true);
+		this.input = input;
+		this.file = file;
+		this.log = log;
+		this.prefix = '[' + prefix + "] ";
+		this.error = error;
+		this.segmentBytes = segmentBytes;
+		this.retention = retention;
+	}
+
+
+
+	@Override
+	public void run() {
+		Charset charset = Charset.defaultCharset();
+		Writer writer = null;
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, charset))) {
+			writer = open(charset);
+			long written = file.length();
+			int segment = RunLog.lastSegment(file);
+			for(String line; (line = reader.readLine()) != null; ) {
+				if(segmentBytes > 0 && written >= segmentBytes) {
+					writer.close();
+					RunLog.rotate(file, ++segment, retention);
+					writer = open(charset);
+					written = 0;
+				}
+				writer.write(line);
+				writer.write(System.lineSeparator());
+				written += line.length() + System.lineSeparator().length();
+				if(log == null) {
+					if(!reader.ready()) writer.flush();
+				}
+				else if(error) log.warn(prefix + line);
+				else log.info(prefix + line);
+			}
+		} catch (IOException e) {
+			failure = e;
+		} finally {
+			if(writer != null) try {
+				writer.close();
+			} catch (IOException e) {
+				if(failure == null) failure = e;
+			}
+		}
+	}
+
+	private Writer open(Charset charset) throws IOException {
+		return new BufferedWriter(Channels.newWriter(FileChannel.open(file.toPath(),
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND), charset.newEncoder(), -1));
+	}
+
+	void finish(long millis) throws IOException, InterruptedException {
+		join(millis);
+		if(failure != null) throw failure;
+	}
+}
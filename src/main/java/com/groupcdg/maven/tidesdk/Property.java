@@ -0,0 +1,68 @@
+/*
+ * Copyright 2014 Computing Distribution Group Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.groupcdg.maven.tidesdk;
+
+import java.io.IOException;
+
+/**
+ * An application property written to tiapp.xml and readable through Ti.App.Properties.
+ */
+public class Property {
+
+	private static final String DEFAULT_TYPE = "string";
+
+	private String name;
+
+	private String type;
+
+	private String value;
+
+
+
+	public Property() {
+	}
+
+	Property(String name, String type, String value) {
+		this.name = name;
+		this.type = type;
+		this.value = value;
+	}
+
+
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	public void setType(String type) {
+		this.type = type;
+	}
+
+	public void setValue(String value) {
+		this.value = value;
+	}
+
+
+
+	String getName() {
+		return name;
+	}
+
+	void write(DescriptorWriter xml) throws IOException {
+		xml.element("property", value == null ? "" : value, "name", name, "type", type == null ? DEFAULT_TYPE : type);
+	}
+}
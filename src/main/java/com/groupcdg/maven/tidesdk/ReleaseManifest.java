@@ -0,0 +1,224 @@
+/*
+ * Copyright 2014 Computing Distribution Group Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.groupcdg.maven.tidesdk;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * SHA-256 of every file of a release, keyed on its path prefixed with the name of the root it
+ * was scanned from, an empty name adding no prefix, and stored in the format read by {@code sha256sum -c}. The manifest also records a
+ * Merkle root over its entries: each leaf is the SHA-256 of {@code path\0hash} in path order and
+ * each parent the SHA-256 of its two children, an unpaired node being carried up unchanged.
+ * Symbolic links are not followed but recorded with their target on {@code #link} lines, which
+ * {@code sha256sum} skips, and enter the Merkle root as {@code path\0-> target}.
+ */
+final class ReleaseManifest {
+
+	private static final String SEPARATOR = "  ";
+
+	private static final String MERKLE_ROOT = "#merkle-root ", LINK = "#link ", LINK_SEPARATOR = "\t", LINK_PREFIX = "-> ";
+
+	private final Map<String, String> hashes = new TreeMap<>();
+
+	private final Map<String, String> links = new TreeMap<>();
+
+	private String recordedRoot;
+
+
+
+	static ReleaseManifest scan(Map<String, File> roots, CopyEngine engine) throws IOException {
+		final ReleaseManifest manifest = new ReleaseManifest();
+		final List<String> paths = new ArrayList<>();
+		final List<File> files = new ArrayList<>();
+		for(Map.Entry<String, File> root : roots.entrySet())
+			if(root.getValue().isDirectory()) collect(root.getValue(), prefix(root.getKey()), paths, files, manifest.links);
+
+		final String[] hashes = new String[files.size()];
+		engine.forEach(files, new CopyEngine.Action<File>() {
+			@Override
+			public void apply(int index, File file) throws IOException {
+				hashes[index] = Checksums.sha256(file);
+			}
+		});
+
+		for(int i = 0; i < hashes.length; i++) manifest.hashes.put(paths.get(i), hashes[i]);
+		return manifest;
+	}
+
+	static ReleaseManifest load(File file) throws IOException {
+		ReleaseManifest manifest = new ReleaseManifest();
+		try (BufferedReader reader = new BufferedReader(
+				new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+			for(String line; (line = reader.readLine()) != null; ) {
+				int separator = line.indexOf(' ');
+				if(line.startsWith(MERKLE_ROOT)) manifest.recordedRoot = line.substring(MERKLE_ROOT.length()).trim();
+				if(line.startsWith(LINK)) {
+					int target = line.indexOf(LINK_SEPARATOR);
+					if(target < 0) throw new IOException("Invalid release manifest line in " + file + ": " + line);
+					manifest.links.put(line.substring(LINK.length(), target), line.substring(target + 1));
+				}
+				if(line.isEmpty() || line.startsWith("#")) continue;
+				if(separator != 64) throw new IOException("Invalid release manifest line in " + file + ": " + line);
+				String path = line.substring(separator + 1);
+				manifest.hashes.put(path.startsWith(" ") || path.startsWith("*") ? path.substring(1) : path,
+						line.substring(0, separator));
+			}
+		}
+		return manifest;
+	}
+
+
+
+	Map<String, String> getHashes() {
+		return Collections.unmodifiableMap(hashes);
+	}
+
+	Map<String, String> getLinks() {
+		return Collections.unmodifiableMap(links);
+	}
+
+	String get(String path) {
+		return hashes.get(path);
+	}
+
+	String getLink(String path) {
+		return links.get(path);
+	}
+
+	void save(File file) throws IOException {
+		try (Writer writer = new BufferedWriter(
+				new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+			writer.write(MERKLE_ROOT + merkleRoot() + '\n');
+			for(Map.Entry<String, String> link : links.entrySet())
+				writer.write(LINK + link.getKey() + LINK_SEPARATOR + link.getValue() + '\n');
+			for(Map.Entry<String, String> entry : hashes.entrySet())
+				writer.write(entry.getValue() + SEPARATOR + entry.getKey() + '\n');
+		}
+	}
+
+	String getRecordedMerkleRoot() {
+		return recordedRoot;
+	}
+
+	String merkleRoot() {
+		Map<String, String> entries = entries();
+		List<byte[]> level = new ArrayList<>(entries.size());
+		for(Map.Entry<String, String> entry : entries.entrySet())
+			level.add(Checksums.digest().digest((entry.getKey() + '\0' + entry.getValue()).getBytes(StandardCharsets.UTF_8)));
+		if(level.isEmpty()) return Checksums.sha256("");
+
+		while(level.size() > 1) {
+			List<byte[]> parents = new ArrayList<>((level.size() + 1) / 2);
+			for(int i = 0; i < level.size(); i += 2) {
+				if(i + 1 == level.size()) {
+					parents.add(level.get(i));
+					continue;
+				}
+				MessageDigest digest = Checksums.digest();
+				digest.update(level.get(i));
+				parents.add(digest.digest(level.get(i + 1)));
+			}
+			level = parents;
+		}
+		return Checksums.hex(level.get(0));
+	}
+
+	List<String> verify(Map<String, File> roots, CopyEngine engine) throws IOException {
+		final List<String> paths = new ArrayList<>();
+		final List<File> files = new ArrayList<>();
+		final Map<String, String> presentLinks = new TreeMap<>();
+		for(Map.Entry<String, File> root : roots.entrySet())
+			if(root.getValue().isDirectory()) collect(root.getValue(), prefix(root.getKey()), paths, files, presentLinks);
+
+		final Map<String, File> present = new HashMap<>();
+		for(int i = 0; i < paths.size(); i++) present.put(paths.get(i), files.get(i));
+		final List<String> expected = new ArrayList<>(hashes.keySet());
+		final String[] problems = new String[expected.size()];
+		engine.forEach(expected, new CopyEngine.Action<String>() {
+			@Override
+			public void apply(int index, String path) throws IOException {
+				File file = present.get(path);
+				if(file == null) problems[index] = (presentLinks.containsKey(path) ? "modified: " : "missing: ") + path;
+				else if(!hashes.get(path).equals(Checksums.sha256Mapped(file))) problems[index] = "modified: " + path;
+			}
+		});
+
+		List<String> result = new ArrayList<>();
+		for(String problem : problems) if(problem != null) result.add(problem);
+		for(Map.Entry<String, String> link : links.entrySet()) {
+			String target = presentLinks.get(link.getKey());
+			if(target == null) result.add((present.containsKey(link.getKey()) ? "modified: " : "missing: ") + link.getKey());
+			else if(!target.equals(link.getValue())) result.add("modified: " + link.getKey());
+		}
+		for(String path : paths) if(!hashes.containsKey(path) && !links.containsKey(path)) result.add("unexpected: " + path);
+		for(String path : presentLinks.keySet()) if(!hashes.containsKey(path) && !links.containsKey(path)) result.add("unexpected: " + path);
+		return result;
+	}
+
+	String digest() {
+		StringBuilder sb = new StringBuilder();
+		for(Map.Entry<String, String> entry : entries().entrySet())
+			sb.append(entry.getValue()).append(SEPARATOR).append(entry.getKey()).append('\n');
+		return Checksums.sha256(sb.toString());
+	}
+
+
+
+	private Map<String, String> entries() {
+		if(links.isEmpty()) return hashes;
+		Map<String, String> entries = new TreeMap<>(hashes);
+		for(Map.Entry<String, String> link : links.entrySet()) entries.put(link.getKey(), LINK_PREFIX + link.getValue());
+		return entries;
+	}
+
+	private static String prefix(String root) {
+		return root.isEmpty() ? root : root + '/';
+	}
+
+	private static void collect(File directory, String prefix, List<String> paths, List<File> files,
+			Map<String, String> links) throws IOException {
+		File[] children = directory.listFiles();
+		if(children == null) throw new IOException("Failed to list contents of " + directory);
+		for(File child : children) {
+			Path path = child.toPath();
+			if(Files.isSymbolicLink(path)) links.put(prefix + child.getName(), Files.readSymbolicLink(path).toString());
+			else if(child.isDirectory()) collect(child, prefix + child.getName() + '/', paths, files, links);
+			else {
+				paths.add(prefix + child.getName());
+				files.add(child);
+			}
+		}
+	}
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2014 Computing Distribution Group Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.groupcdg.maven.tidesdk;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.Map;
+
+/**
+ * Writes a set of resources as a single sequential pack file with a JSON offset index, together
+ * with the loader shim that reads entries back out of the pack at runtime.
+ */
+final class ResourcePacker {
+
+	static final String PACK = "resources.pack", INDEX = "resources.idx", SHIM = "tidepack.js";
+
+	static final int VERSION = 1;
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final File directory;
+
+	private final AssetProcessor processor;
+
+	private int files;
+
+	private long bytes;
+
+
+
+	ResourcePacker(File directory, AssetProcessor processor) {
+		this.directory = directory;
+		this.processor = processor;
+	}
+
+
+
+	static void delete(File directory) throws IOException {
+		for(String name : new String[] { PACK, INDEX, SHIM }) Files.deleteIfExists(new File(directory, name).toPath());
+	}
+
+	boolean pack(Map<String, File> sources) throws IOException {
+		String fingerprint = fingerprint(sources);
+		File index = new File(directory, INDEX), pack = new File(directory, PACK);
+		if(pack.isFile() && index.isFile() && FileUtils.readFileToString(index, StandardCharsets.UTF_8.name())
+				.contains("\"fingerprint\": " + Json.quote(fingerprint))) return false;
+
+		if(!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory())
+			throw new IOException(AbstractTidesdkMojo.CREATE_DIRECTORY_ERROR_MESSAGE + directory.getAbsolutePath());
+
+		StringBuilder json = new StringBuilder("{\"version\": ").append(VERSION)
+				.append(", \"fingerprint\": ").append(Json.quote(fingerprint)).append(", \"entries\": {");
+		File temp = new File(directory, PACK + ".tmp");
+		try (OutputStream out = new BufferedOutputStream(new FileOutputStream(temp), BUFFER_SIZE)) {
+			long offset = 0;
+			for(Map.Entry<String, File> source : sources.entrySet()) {
+				long length = write(source.getKey(), source.getValue(), out);
+				json.append(files++ == 0 ? "\n" : ",\n").append(Json.quote(source.getKey()))
+						.append(": [").append(offset).append(", ").append(length).append(']');
+				offset += length;
+			}
+			bytes = offset;
+		}
+		Files.deleteIfExists(pack.toPath());
+		if(!temp.renameTo(pack)) throw new IOException("Could not write " + pack.getAbsolutePath());
+		FileUtils.writeStringToFile(index, json.append("\n}}\n").toString(), StandardCharsets.UTF_8.name());
+
+		try (InputStream shim = ResourcePacker.class.getResourceAsStream(SHIM)) {
+			FileUtils.copyInputStreamToFile(shim, new File(directory, SHIM));
+		}
+		return true;
+	}
+
+	int getFiles() {
+		return files;
+	}
+
+	long getBytes() {
+		return bytes;
+	}
+
+
+
+	private long write(String path, File source, OutputStream out) throws IOException {
+		if(processor != null && processor.accepts(path)) {
+			byte[] content = FileUtils.readFileToByteArray(source);
+			byte[] result = processor.process(path, Checksums.hex(Checksums.digest().digest(content)), content);
+			out.write(result);
+			return result.length;
+		}
+		return Files.copy(source.toPath(), out);
+	}
+
+	private String fingerprint(Map<String, File> sources) {
+		MessageDigest digest = Checksums.digest();
+		digest.update((VERSION + (processor == null ? "" : AssetProcessor.getOptions()) + '\n').getBytes(StandardCharsets.UTF_8));
+		for(Map.Entry<String, File> source : sources.entrySet()) {
+			File file = source.getValue();
+			digest.update(new StringBuilder(source.getKey()).append('\0').append(file.getAbsolutePath())
+					.append('\0').append(file.length()).append('\0').append(file.lastModified()).append('\n')
+					.toString().getBytes(StandardCharsets.UTF_8));
+		}
+		return Checksums.hex(digest.digest());
+	}
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2014 Computing Distribution Group Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.groupcdg.maven.tidesdk;
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Synchronises a resolved set of source files into a target directory, copying only the files
+ * that differ from those recorded in the {@link StagingManifest} and deleting stale outputs. Stale
+ * outputs go first, so a path can turn from a file into a directory or back between runs.
+ * Assets accepted by an optional {@link AssetProcessor} are written processed rather than linked.
+ * The resolved sources and both manifests are held in memory, so heap use grows with the number
+ * of staged files.
+ */
+final class ResourceStager {
+
+	private final File targetDirectory;
+
+	private final File manifestFile;
+
+	private final CopyEngine engine;
+
+	private final StagingStrategy strategy;
+
+	private final AssetProcessor processor;
+
+	private final Log log;
+
+	private final AtomicInteger copied = new AtomicInteger(), skipped = new AtomicInteger();
+
+	private final AtomicLong bytes = new AtomicLong();
+
+	private int deleted;
+
+
+
+	ResourceStager(File targetDirectory, File manifestFile, CopyEngine engine, StagingStrategy strategy, Log log) {
+		this(targetDirectory, manifestFile, engine, strategy, null, log);
+	}
+
+	ResourceStager(File targetDirectory, File manifestFile, CopyEngine engine, StagingStrategy strategy,
+			AssetProcessor processor, Log log) {
+		this.targetDirectory = targetDirectory;
+		this.manifestFile = manifestFile;
+		this.engine = engine;
+		this.strategy = strategy;
+		this.processor = processor;
+		this.log = log;
+	}
+
+
+
+	void stage(Map<String, File> sources) throws IOException {
+		final long start = System.nanoTime();
+		final StagingManifest previous = StagingManifest.load(manifestFile);
+		final List<String> paths = new ArrayList<>(sources.keySet());
+		final StagingManifest.Entry[] entries = new StagingManifest.Entry[paths.size()];
+		final String options = processor == null ? "" : AssetProcessor.getOptions();
+		final boolean restage = !options.equals(previous.getOptions());
+
+		for(int i = 0; i < entries.length; i++) {
+			StagingManifest.Entry entry = previous.remove(paths.get(i));
+			entries[i] = restage ? null : entry;
+		}
+		for(String path : previous.paths()) delete(path);
+		engine.forEach(paths, new CopyEngine.Action<String>() {
+			@Override
+			public void apply(int index, String path) throws IOException {
+				entries[index] = stage(path, sources.get(path), entries[index]);
+			}
+		});
+
+		StagingManifest current = new StagingManifest();
+		current.setOptions(options);
+		for(int i = 0; i < entries.length; i++) current.put(paths.get(i), entries[i]);
+		current.save(manifestFile);
+
+		if(log.isInfoEnabled()) log.info(report(System.nanoTime() - start));
+	}
+
+	int getCopied() {
+		return copied.get();
+	}
+
+	int getSkipped() {
+		return skipped.get();
+	}
+
+	int getDeleted() {
+		return deleted;
+	}
+
+	long getBytes() {
+		return bytes.get();
+	}
+
+
+
+	private StagingManifest.Entry stage(String path, File source, StagingManifest.Entry previous) throws IOException {
+		final File target = new File(targetDirectory, path);
+		final long size = source.length();
+		final long lastModified = source.lastModified();
+		final boolean processed = processor != null && processor.accepts(path);
+		final boolean present = target.isFile() && (processed || target.length() == size);
+
+		if(previous != null && present && previous.isUnchanged(source, size, lastModified)) {
+			skipped.incrementAndGet();
+			return previous;
+		}
+
+		String hash = null;
+		if(previous != null && present && previous.hasHash()) {
+			hash = Checksums.sha256(source);
+			if(hash.equals(previous.getHash())) {
+				skipped.incrementAndGet();
+				return new StagingManifest.Entry(source.getAbsolutePath(), size, lastModified, hash);
+			}
+		}
+
+		File parent = target.getParentFile();
+		if(!parent.isDirectory() && !parent.mkdirs() && !parent.isDirectory())
+			throw new IOException(AbstractTidesdkMojo.CREATE_DIRECTORY_ERROR_MESSAGE + parent.getAbsolutePath());
+		Files.deleteIfExists(target.toPath());
+		String staged = processed ? processor.process(path, source, target) : strategy.stage(source, target);
+		if(staged != null) hash = staged;
+		copied.incrementAndGet();
+		bytes.addAndGet(size);
+		return new StagingManifest.Entry(source.getAbsolutePath(), size, lastModified, hash);
+	}
+
+	private void delete(String path) throws IOException {
+		File target = new File(targetDirectory, path);
+		Files.deleteIfExists(target.toPath());
+		deleted++;
+
+		for(File dir = target.getParentFile(); dir != null && !dir.equals(targetDirectory); dir = dir.getParentFile()) {
+			String[] children = dir.list();
+			if(children == null || children.length > 0 || !dir.delete()) break;
+		}
+	}
+
+	private String report(long nanos) {
+		double seconds = Math.max(nanos, 1) / 1e9;
+		String report = String.format(Locale.ROOT, "Staged resources: %d copied (%.1f MB in %.2f s, %.1f MB/s, %.0f files/s on %d threads, %s), "
+						+ "%d unchanged, %d removed",
+				copied.get(), bytes.get() / 1e6, seconds, bytes.get() / 1e6 / seconds, copied.get() / seconds,
+				engine.getParallelism(), strategy, skipped.get(), deleted);
+		return processor == null ? report : report + String.format(Locale.ROOT, "; minified %d (%d from cache), %.1f KB saved",
+				processor.getProcessed() + processor.getCached(), processor.getCached(), processor.getSaved() / 1e3);
+	}
+}
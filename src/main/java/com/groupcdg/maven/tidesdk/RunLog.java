@@ -0,0 +1,168 @@
+/*
+ * Copyright 2014 Computing Distribution Group Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.groupcdg.maven.tidesdk;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The log files of one builder invocation. Every run writes its own {@code .out} and {@code .err}
+ * files, rotated into gzip compressed segments once they reach the segment size, and is recorded
+ * as one JSON line in {@code runs.jsonl} when it ends. Only the most recent runs are kept.
+ * Long-lived logs such as the builder daemon's are rotated the same way and keep only the most
+ * recent segments.
+ */
+final class RunLog {
+
+	static final String INDEX = "runs.jsonl";
+
+	static final String OUT_SUFFIX = ".out", ERR_SUFFIX = ".err";
+
+	private static final String SEGMENT_SUFFIX = ".gz";
+
+	private static final Pattern LOG = Pattern.compile("\"log\": \"([^\"]+)\"");
+
+	private static final Object LOCK = new Object();
+
+	private final File directory;
+
+	private final String goal, name;
+
+	private final Date started = new Date();
+
+	private final long start = System.nanoTime();
+
+
+
+	private RunLog(File directory, String goal, String name) {
+		this.directory = directory;
+		this.goal = goal;
+		this.name = name;
+	}
+
+
+
+	static RunLog start(File directory, String goal) throws IOException {
+		SimpleDateFormat format = new SimpleDateFormat("yyyyMMdd'T'HHmmssSSS", Locale.ROOT);
+		format.setTimeZone(TimeZone.getTimeZone("UTC"));
+		String base = goal + '-' + format.format(new Date());
+		synchronized (LOCK) {
+			for(int i = 1; ; i++) {
+				String name = i == 1 ? base : base + '-' + i;
+				if(new File(directory, name + OUT_SUFFIX).createNewFile()) {
+					Files.createFile(new File(directory, name + ERR_SUFFIX).toPath());
+					return new RunLog(directory, goal, name);
+				}
+			}
+		}
+	}
+
+	static void rotate(File file, int segment) throws IOException {
+		rotate(file, segment, 0);
+	}
+
+	static void rotate(File file, int segment, int retention) throws IOException {
+		File compressed = segment(file, segment);
+		try (InputStream in = new FileInputStream(file); OutputStream out = new GZIPOutputStream(new FileOutputStream(compressed))) {
+			byte[] buffer = new byte[64 * 1024];
+			for(int n; (n = in.read(buffer)) != -1; ) out.write(buffer, 0, n);
+		}
+		Files.delete(file.toPath());
+		if(retention > 0) Files.deleteIfExists(segment(file, segment - retention).toPath());
+	}
+
+	static int lastSegment(File file) {
+		String[] names = file.getAbsoluteFile().getParentFile().list();
+		Pattern segment = Pattern.compile(Pattern.quote(file.getName()) + "\\.(\\d+)" + Pattern.quote(SEGMENT_SUFFIX));
+		int last = 0;
+		if(names != null) for(String name : names) {
+			Matcher matcher = segment.matcher(name);
+			if(matcher.matches()) last = Math.max(last, Integer.parseInt(matcher.group(1)));
+		}
+		return last;
+	}
+
+	private static File segment(File file, int segment) {
+		return new File(file.getParentFile(), file.getName() + '.' + segment + SEGMENT_SUFFIX);
+	}
+
+
+
+	File getOut() {
+		return new File(directory, name + OUT_SUFFIX);
+	}
+
+	File getErr() {
+		return new File(directory, name + ERR_SUFFIX);
+	}
+
+	void finish(Integer exitCode, boolean timedOut, int retention) throws IOException {
+		StringBuilder entry = new StringBuilder("{\"timestamp\": ").append(Json.quote(Metrics.timestamp(started)))
+				.append(", \"goal\": ").append(Json.quote(goal))
+				.append(", \"exitCode\": ").append(exitCode)
+				.append(", \"timedOut\": ").append(timedOut)
+				.append(", \"durationMillis\": ").append((System.nanoTime() - start) / 1000000L)
+				.append(", \"log\": ").append(Json.quote(name))
+				.append("}\n");
+
+		File index = new File(directory, INDEX);
+		synchronized (LOCK) {
+			try (OutputStream out = new FileOutputStream(index, true)) {
+				out.write(entry.toString().getBytes(StandardCharsets.UTF_8));
+			}
+			if(retention > 0) prune(index, retention);
+		}
+	}
+
+
+
+	private void prune(File index, int retention) throws IOException {
+		List<String> runs = FileUtils.readLines(index, StandardCharsets.UTF_8.name());
+		if(runs.size() <= retention) return;
+
+		List<String> expired = new ArrayList<>();
+		for(String run : runs.subList(0, runs.size() - retention)) {
+			Matcher log = LOG.matcher(run);
+			if(log.find()) expired.add(log.group(1));
+		}
+		File[] files = directory.listFiles();
+		if(files != null) for(File file : files) for(String name : expired)
+			if(file.getName().startsWith(name + '.')) FileUtils.deleteQuietly(file);
+
+		File temp = new File(directory, INDEX + ".tmp");
+		FileUtils.writeLines(temp, StandardCharsets.UTF_8.name(), runs.subList(runs.size() - retention, runs.size()), "\n");
+		Files.move(temp.toPath(), index.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+}
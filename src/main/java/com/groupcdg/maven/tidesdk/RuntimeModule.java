@@ -0,0 +1,57 @@
+/*
+ * Copyright 2014 Computing Distribution Group Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.groupcdg.maven.tidesdk;
+
+/**
+ * A TideSDK module listed in the application manifest in addition to the standard modules.
+ */
+public class RuntimeModule {
+
+	private String name;
+
+	private String version;
+
+
+
+	public RuntimeModule() {
+	}
+
+	RuntimeModule(String name, String version) {
+		this.name = name;
+		this.version = version;
+	}
+
+
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	public void setVersion(String version) {
+		this.version = version;
+	}
+
+
+
+	String getName() {
+		return name;
+	}
+
+	String getVersion() {
+		return version;
+	}
+}
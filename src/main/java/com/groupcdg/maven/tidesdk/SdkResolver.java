@@ -0,0 +1,234 @@
+/*
+ * Copyright 2014 Computing Distribution Group Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.groupcdg.maven.tidesdk;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.MojoExecutionException;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Locates and validates the tidebuilder script and Python interpreter for a target platform.
+ * Resolutions are cached for the lifetime of the Maven JVM, and interpreter versions are also
+ * cached on disk keyed on the interpreter's size and modification time, so the interpreter is
+ * only probed again after it changes. TideSDK's builder is written for Python 2, so Python 3 or later
+ * is only accepted when pythonCommand names the interpreter explicitly.
+ */
+final class SdkResolver {
+
+	static final class Sdk {
+
+		private final File builder;
+
+		private final String python, pythonVersion;
+
+		private Sdk(File builder, String python, String pythonVersion) {
+			this.builder = builder;
+			this.python = python;
+			this.pythonVersion = pythonVersion;
+		}
+
+		File getBuilder() {
+			return builder;
+		}
+
+		String getPython() {
+			return python;
+		}
+
+		String getPythonVersion() {
+			return pythonVersion;
+		}
+	}
+
+
+	private static final int[] MINIMUM_PYTHON = { 2, 6 };
+
+	private static final int UNSUPPORTED_PYTHON = 3;
+
+	private static final long PROBE_SECONDS = 30L;
+
+	private static final String PROBE = "import sys; sys.stdout.write('%d.%d.%d' % tuple(sys.version_info[:3]))";
+
+	private static final ConcurrentMap<String, Sdk> SESSION = new ConcurrentHashMap<>();
+
+	private static final Object DISK_LOCK = new Object();
+
+	private final File cacheFile;
+
+
+
+	SdkResolver(File cacheFile) {
+		this.cacheFile = cacheFile;
+	}
+
+
+
+	static void clearSession() {
+		SESSION.clear();
+	}
+
+	Sdk resolve(AbstractTidesdkMojo.OS host, AbstractTidesdkMojo.OS target, String sdkHome, String version,
+			String pythonOverride) throws MojoExecutionException {
+		String key = new StringBuilder(host.name()).append('\0').append(target.name()).append('\0')
+				.append(sdkHome).append('\0').append(version).append('\0').append(pythonOverride).toString();
+		Sdk sdk = SESSION.get(key);
+		if(sdk == null) {
+			File builder = builder(host, target, sdkHome, version);
+			File python = python(host, pythonOverride);
+			String pythonVersion = pythonVersion(python);
+			checkPythonVersion(python, pythonVersion, pythonOverride != null);
+			sdk = new Sdk(builder, python.getPath(), pythonVersion);
+			SESSION.putIfAbsent(key, sdk);
+		}
+		return sdk;
+	}
+
+
+
+	private File builder(AbstractTidesdkMojo.OS host, AbstractTidesdkMojo.OS target, String sdkHome, String version)
+			throws MojoExecutionException {
+		if(version == null || version.trim().isEmpty()) throw new MojoExecutionException("sdkVersion is not set");
+		File builder = new File(host.builderCommand(sdkHome, version, target));
+		if(builder.isFile()) return builder;
+
+		File versions = builder.getParentFile().getParentFile();
+		String[] available = versions.list();
+		StringBuilder message = new StringBuilder("No TideSDK ").append(version).append(" found for platform ")
+				.append(target.name()).append(" at ").append(builder.getAbsolutePath());
+		if(available != null && available.length > 0) {
+			Arrays.sort(available);
+			message.append(". Installed versions: ").append(Arrays.toString(available));
+		} else message.append(". Set sdkHome if TideSDK is installed elsewhere");
+		throw new MojoExecutionException(message.toString());
+	}
+
+	private File python(AbstractTidesdkMojo.OS host, String pythonOverride) throws MojoExecutionException {
+		String command = host.pythonCommand(pythonOverride);
+		Set<File> candidates = new LinkedHashSet<>();
+		File direct = new File(command);
+		if(direct.isAbsolute() || command.indexOf(File.separatorChar) >= 0) {
+			candidates.add(direct);
+			if(host == AbstractTidesdkMojo.OS.win32) candidates.add(new File(command + ".exe"));
+		} else {
+			String path = System.getenv("PATH");
+			if(path != null) for(String directory : path.split(File.pathSeparator)) {
+				if(directory.isEmpty()) continue;
+				candidates.add(new File(directory, command));
+				if(host == AbstractTidesdkMojo.OS.win32) candidates.add(new File(directory, command + ".exe"));
+			}
+		}
+		for(File candidate : candidates) if(candidate.isFile() && candidate.canExecute()) return candidate;
+		throw new MojoExecutionException("Python interpreter '" + command + "' not found"
+				+ (direct.isAbsolute() ? " at " + direct.getAbsolutePath() : " on the PATH")
+				+ ". Set pythonCommand or PYTHON_HOME");
+	}
+
+	private String pythonVersion(File python) throws MojoExecutionException {
+		String key = python.getAbsolutePath();
+		String stamp = python.length() + ":" + python.lastModified() + ':';
+
+		synchronized (DISK_LOCK) {
+			Properties cache = load();
+			String cached = cache.getProperty(key);
+			if(cached != null && cached.startsWith(stamp)) return cached.substring(stamp.length());
+
+			String version = probe(python);
+			cache.setProperty(key, stamp + version);
+			save(cache);
+			return version;
+		}
+	}
+
+	static void checkPythonVersion(File python, String version, boolean explicit) throws MojoExecutionException {
+		int[] parsed = parse(version);
+		if(parsed[0] < MINIMUM_PYTHON[0] || parsed[0] == MINIMUM_PYTHON[0] && parsed[1] < MINIMUM_PYTHON[1])
+			throw new MojoExecutionException("Python " + version + " at " + python + " is too old, TideSDK needs "
+					+ MINIMUM_PYTHON[0] + '.' + MINIMUM_PYTHON[1] + " or later");
+		if(parsed[0] >= UNSUPPORTED_PYTHON && !explicit)
+			throw new MojoExecutionException("Python " + version + " at " + python + " is not supported by TideSDK, "
+					+ "install Python 2 or set pythonCommand to use this interpreter anyway");
+	}
+
+	private static String probe(File python) throws MojoExecutionException {
+		File output = null;
+		try {
+			output = File.createTempFile("tidesdk-python", ".txt");
+			Process process = new ProcessBuilder(python.getPath(), "-c", PROBE).redirectErrorStream(true)
+					.redirectOutput(output).start();
+			process.getOutputStream().close();
+			if(!process.waitFor(PROBE_SECONDS, TimeUnit.SECONDS)) {
+				AbstractTidesdkMojo.destroy(process);
+				throw new MojoExecutionException("Python interpreter " + python + " did not respond");
+			}
+			String version = FileUtils.readFileToString(output, StandardCharsets.UTF_8.name()).trim();
+			if(process.exitValue() != 0 || !version.matches("\\d+\\.\\d+\\.\\d+"))
+				throw new MojoExecutionException("Python interpreter " + python + " is not usable: " + version);
+			return version;
+		} catch (IOException e) {
+			throw new MojoExecutionException("Could not run Python interpreter " + python, e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MojoExecutionException("Interrupted while probing Python interpreter " + python, e);
+		} finally {
+			if(output != null) output.delete();
+		}
+	}
+
+	private static int[] parse(String version) {
+		List<Integer> parts = new ArrayList<>();
+		for(String part : version.split("\\.")) parts.add(Integer.parseInt(part));
+		return new int[] { parts.get(0), parts.size() > 1 ? parts.get(1) : 0 };
+	}
+
+	private Properties load() {
+		Properties properties = new Properties();
+		if(cacheFile.isFile()) try (InputStream in = new FileInputStream(cacheFile)) {
+			properties.load(in);
+		} catch (IOException | IllegalArgumentException e) {
+			properties.clear();
+		}
+		return properties;
+	}
+
+	private void save(Properties properties) {
+		File directory = cacheFile.getAbsoluteFile().getParentFile();
+		if(!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) return;
+		File temp = new File(directory, cacheFile.getName() + ".tmp");
+		try (OutputStream out = new FileOutputStream(temp)) {
+			properties.store(out, "TideSDK Maven plugin interpreter cache");
+		} catch (IOException e) {
+			return;
+		}
+		if(!temp.renameTo(cacheFile) && (!cacheFile.delete() || !temp.renameTo(cacheFile))) temp.delete();
+	}
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2014 Computing Distribution Group Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.groupcdg.maven.tidesdk;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Record of every file staged into the application resources, keyed on the path relative to
+ * the resources directory, so that subsequent runs only need to copy what has changed.
+ */
+final class StagingManifest {
+
+	static final class Entry {
+
+		private final String source;
+
+		private final long size;
+
+		private final long lastModified;
+
+		private final String hash;
+
+		Entry(String source, long size, long lastModified, String hash) {
+			this.source = source;
+			this.size = size;
+			this.lastModified = lastModified;
+			this.hash = hash != null ? hash : UNKNOWN_HASH;
+		}
+
+		String getSource() {
+			return source;
+		}
+
+		long getSize() {
+			return size;
+		}
+
+		long getLastModified() {
+			return lastModified;
+		}
+
+		String getHash() {
+			return hash;
+		}
+
+		boolean hasHash() {
+			return !UNKNOWN_HASH.equals(hash);
+		}
+
+		boolean isUnchanged(File file, long size, long lastModified) {
+			return this.size == size && this.lastModified == lastModified && source.equals(file.getAbsolutePath());
+		}
+	}
+
+
+	private static final String SEPARATOR = "\t";
+
+	private static final String UNKNOWN_HASH = "-";
+
+	private static final String HEADER = "#tidesdk-staging-manifest 1";
+
+	private final Map<String, Entry> entries = new LinkedHashMap<>();
+
+	private String options = "";
+
+
+
+	static StagingManifest load(File file) throws IOException {
+		StagingManifest manifest = new StagingManifest();
+		if(!file.isFile()) return manifest;
+
+		try (BufferedReader reader = new BufferedReader(
+				new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+			String header = reader.readLine();
+			if(header == null || !header.startsWith(HEADER)) return manifest;
+			manifest.setOptions(header.substring(HEADER.length()).trim());
+			for(String line; (line = reader.readLine()) != null; ) {
+				String[] fields = line.split(SEPARATOR);
+				if(fields.length != 5) continue;
+				manifest.put(fields[0], new Entry(fields[1],
+						Long.parseLong(fields[2]), Long.parseLong(fields[3]), fields[4]));
+			}
+		} catch (NumberFormatException e) {
+			return new StagingManifest();
+		}
+		return manifest;
+	}
+
+	static void delete(File file) throws IOException {
+		if(file.exists() && !file.delete()) throw new IOException("Could not delete " + file.getAbsolutePath());
+	}
+
+
+
+	String getOptions() {
+		return options;
+	}
+
+	void setOptions(String options) {
+		this.options = options == null ? "" : options;
+	}
+
+	Entry get(String path) {
+		return entries.get(path);
+	}
+
+	void put(String path, Entry entry) {
+		entries.put(path, entry);
+	}
+
+	Entry remove(String path) {
+		return entries.remove(path);
+	}
+
+	Set<String> paths() {
+		return entries.keySet();
+	}
+
+	int size() {
+		return entries.size();
+	}
+
+	void save(File file) throws IOException {
+		File directory = file.getAbsoluteFile().getParentFile();
+		if(!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory())
+			throw new IOException(AbstractTidesdkMojo.CREATE_DIRECTORY_ERROR_MESSAGE + directory.getAbsolutePath());
+		File temp = new File(directory, file.getName() + ".tmp");
+		try (Writer writer = new BufferedWriter(
+				new OutputStreamWriter(new FileOutputStream(temp), StandardCharsets.UTF_8))) {
+			writer.write(options.isEmpty() ? HEADER : HEADER + ' ' + options);
+			writer.write('\n');
+			for(Map.Entry<String, Entry> e : entries.entrySet()) {
+				Entry entry = e.getValue();
+				writer.write(new StringBuilder(e.getKey())
+						.append(SEPARATOR).append(entry.getSource())
+						.append(SEPARATOR).append(entry.getSize())
+						.append(SEPARATOR).append(entry.getLastModified())
+						.append(SEPARATOR).append(entry.getHash())
+						.append('\n').toString());
+			}
+		}
+		delete(file);
+		if(!temp.renameTo(file)) throw new IOException("Could not write " + file.getAbsolutePath());
+	}
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2014 Computing Distribution Group Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.groupcdg.maven.tidesdk;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+
+/**
+ * How a resolved source file is placed into the staged application. Every strategy other than
+ * {@link #copy} falls back to a plain copy when the file system refuses the operation, for example
+ * when linking across devices or creating symbolic links without the required privilege.
+ * Strategies return the SHA-256 of the content when they had to read it anyway, otherwise null.
+ */
+public enum StagingStrategy {
+
+	copy {
+		@Override
+		String stage(File source, File target) throws IOException {
+			String hash = Checksums.copy(source, target);
+			target.setLastModified(source.lastModified());
+			return hash;
+		}
+	},
+
+	hardlink {
+		@Override
+		String stage(File source, File target) throws IOException {
+			try {
+				Files.createLink(target.toPath(), source.toPath());
+				return null;
+			} catch (IOException | UnsupportedOperationException e) {
+				return copy.stage(source, target);
+			}
+		}
+	},
+
+	symlink {
+		@Override
+		String stage(File source, File target) throws IOException {
+			try {
+				Files.createSymbolicLink(target.toPath(), source.getAbsoluteFile().toPath());
+				return null;
+			} catch (IOException | UnsupportedOperationException e) {
+				return copy.stage(source, target);
+			}
+		}
+	},
+
+	transferTo {
+		@Override
+		String stage(File source, File target) throws IOException {
+			try (FileChannel in = new FileInputStream(source).getChannel();
+				 FileChannel out = new FileOutputStream(target).getChannel()) {
+				final long size = in.size();
+				for(long position = 0, n; position < size; position += n)
+					if((n = in.transferTo(position, size - position, out)) <= 0) {
+						out.close();
+						return copy.stage(source, target);
+					}
+			}
+			target.setLastModified(source.lastModified());
+			return null;
+		}
+	};
+
+
+
+	abstract String stage(File source, File target) throws IOException;
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2014 Computing Distribution Group Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.groupcdg.maven.tidesdk;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Checks every built bundle against the checksums recorded by the build goal, failing on any
+ * missing, modified or unexpected file and on a manifest whose Merkle root no longer matches.
+ * Since a manifest can be regenerated along with the files it covers, roots published from a
+ * trusted build can be pinned per platform with expectedMerkleRoots.
+ */
+@Mojo(name = "verify", defaultPhase = LifecyclePhase.VERIFY, threadSafe = true)
+public class VerifyMojo extends AbstractTidesdkMojo {
+
+
+	private static final String VERIFY = "verify";
+
+	private static final int MAX_REPORTED = 20;
+
+	@Parameter(property = "expectedMerkleRoots")
+	private Map<String, String> expectedMerkleRoots;
+
+
+
+	public void setExpectedMerkleRoots(Map<String, String> expectedMerkleRoots) {
+		this.expectedMerkleRoots = expectedMerkleRoots;
+	}
+
+
+
+	public void execute() throws MojoExecutionException {
+		final Metrics metrics = new Metrics(VERIFY);
+		final File packages = new File(getOutputDirectory(), "packages");
+		final List<String> problems = new ArrayList<>();
+		int verified = 0;
+		try (CopyEngine engine = new CopyEngine(getParallelism())) {
+			for(OS os : OS.values()) {
+				File platformDirectory = new File(packages, os.name());
+				File checksums = new File(platformDirectory, BuildMojo.BUNDLE_CHECKSUMS);
+				String expected = getExpectedMerkleRoots().get(os.name());
+				if(!checksums.isFile()) {
+					if(expected != null) problems.add(os.name() + ": " + BuildMojo.BUNDLE_CHECKSUMS + " is missing");
+					continue;
+				}
+
+				try (Metrics.Phase phase = metrics.start(VERIFY + '-' + os.name())) {
+					ReleaseManifest manifest = ReleaseManifest.load(checksums);
+					String root = manifest.merkleRoot();
+					if(!root.equals(manifest.getRecordedMerkleRoot()))
+						problems.add(os.name() + ": " + BuildMojo.BUNDLE_CHECKSUMS + " does not match its Merkle root");
+					if(expected != null && !root.equalsIgnoreCase(expected.trim()))
+						problems.add(os.name() + ": Merkle root " + root + " does not match the expected " + expected.trim());
+					for(String problem : manifest.verify(Collections.singletonMap(BuildMojo.BUNDLE,
+							new File(platformDirectory, BuildMojo.BUNDLE)), engine)) problems.add(os.name() + ": " + problem);
+					phase.set(Metrics.FILES, manifest.getHashes().size());
+					verified++;
+				}
+			}
+		} catch (IOException e) {
+			throw new MojoExecutionException("Failed to verify bundles", e);
+		} finally {
+			report(metrics);
+		}
+
+		if(verified == 0) throw new MojoExecutionException("No " + BuildMojo.BUNDLE_CHECKSUMS + " found under "
+				+ packages.getAbsolutePath() + ", run the build goal first");
+		if(!problems.isEmpty()) {
+			for(String problem : problems.subList(0, Math.min(problems.size(), MAX_REPORTED))) getLog().error(problem);
+			if(problems.size() > MAX_REPORTED) getLog().error("... and " + (problems.size() - MAX_REPORTED) + " more");
+			throw new MojoExecutionException("Bundle verification failed with " + problems.size() + " problems");
+		}
+		getLog().info("Verified " + verified + " bundles");
+	}
+
+
+
+	protected Map<String, String> getExpectedMerkleRoots() {
+		return expectedMerkleRoots == null ? Collections.<String, String>emptyMap() : expectedMerkleRoots;
+	}
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2014 Computing Distribution Group Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.groupcdg.maven.tidesdk;
+
+import org.apache.maven.model.FileSet;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generates the application once and then keeps the staged resources in sync with the file set
+ * directories until the build is interrupted. File sets sharing a directory are tracked side by
+ * side, so a new subdirectory is watched as soon as any of them can match below it.
+ */
+@Mojo(name = "watch", threadSafe = true,
+		requiresDependencyResolution = ResolutionScope.RUNTIME)
+public class WatchMojo extends GenerateMojo {
+
+
+	private static final String WATCH = "watch";
+
+	private static final String WATCH_ERROR_MESSAGE = "Failed to watch resources";
+
+	@Parameter(property = "watchDebounce", defaultValue = "200")
+	private long watchDebounce;
+
+
+
+	public void setWatchDebounce(long watchDebounce) {
+		this.watchDebounce = watchDebounce;
+	}
+
+
+
+	@Override
+	public void execute() throws MojoExecutionException {
+		checkSdk();
+		Path pom = getProject().getFile() != null ? getProject().getFile().getAbsoluteFile().toPath() : null;
+		try (WatchService watcher = FileSystems.getDefault().newWatchService()) {
+			Map<WatchKey, Path> keys = new HashMap<>();
+			Map<Path, List<FileSetMatcher.State>> states = new HashMap<>();
+			if(pom != null) keys.put(pom.getParent().register(watcher,
+					StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_CREATE), null);
+			for(FileSet fileSet : getFileSets()) {
+				Path root = new File(fileSet.getDirectory()).toPath();
+				if(Files.isDirectory(root)) register(watcher, root, FileSetMatcher.compile(fileSet).root(), keys, states);
+				else getLog().warn("Not watching " + root + ", it does not exist");
+			}
+
+			generate(new Metrics(WATCH), !isIncremental(), true);
+			getLog().info("Watching " + getFileSets().size() + " resource directories, press Ctrl+C to stop");
+			while(!Thread.currentThread().isInterrupted()) {
+				WatchKey key = watcher.take();
+				boolean changed = false, pomChanged = false;
+				do {
+					Path directory = keys.get(key);
+					for(WatchEvent<?> event : key.pollEvents()) {
+						if(event.kind() == StandardWatchEventKinds.OVERFLOW) {
+							changed = true;
+							continue;
+						}
+						Path path = (directory != null ? directory : pom.getParent()).resolve((Path) event.context());
+						if(path.equals(pom)) pomChanged = true;
+						else if(directory != null) {
+							changed = true;
+							List<FileSetMatcher.State> parents = states.get(directory);
+							if(event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path) && parents != null)
+								for(FileSetMatcher.State state : new ArrayList<>(parents)) {
+									FileSetMatcher.State child = state.descend(path.getFileName().toString());
+									if(!child.isPruned()) register(watcher, path, child, keys, states);
+								}
+						}
+					}
+					if(!key.reset()) keys.remove(key);
+				} while((key = watcher.poll(watchDebounce, TimeUnit.MILLISECONDS)) != null);
+
+				if(pomChanged) getLog().warn(pom.getFileName() + " changed, restart the watch goal to apply the new configuration");
+				if(changed) regenerate();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (IOException e) {
+			throw new MojoExecutionException(WATCH_ERROR_MESSAGE, e);
+		}
+	}
+
+
+
+	private void regenerate() {
+		long start = System.nanoTime();
+		try {
+			generate(new Metrics(WATCH), false, false);
+			getLog().info("Resources updated in " + (System.nanoTime() - start) / 1000000L + "ms");
+		} catch (MojoExecutionException e) {
+			getLog().error(e.getMessage(), e.getCause());
+		}
+	}
+
+	private static void register(final WatchService watcher, Path root, final FileSetMatcher.State state,
+			final Map<WatchKey, Path> keys, final Map<Path, List<FileSetMatcher.State>> states) throws IOException {
+		final Deque<FileSetMatcher.State> parents = new ArrayDeque<>();
+		Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+				FileSetMatcher.State current = parents.isEmpty() ? state : parents.peek().descend(dir.getFileName().toString());
+				if(current.isPruned()) return FileVisitResult.SKIP_SUBTREE;
+				parents.push(current);
+				List<FileSetMatcher.State> watched = states.get(dir);
+				if(watched == null) states.put(dir, watched = new ArrayList<>());
+				if(!watched.contains(current)) watched.add(current);
+				keys.put(dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+						StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY), dir);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+				if(e != null) throw e;
+				parents.pop();
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+}
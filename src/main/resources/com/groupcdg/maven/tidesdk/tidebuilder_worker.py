@@ -0,0 +1,113 @@
+#
+# Copyright 2014 Computing Distribution Group Ltd.
+#
+# Licensed under the Apache License, Version 2.0 (the "License");
+# you may not use this file except in compliance with the License.
+# You may obtain a copy of the License at
+#
+#      http://www.apache.org/licenses/LICENSE-2.0
+#
+# Unless required by applicable law or agreed to in writing, software
+# distributed under the License is distributed on an "AS IS" BASIS,
+# WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+# See the License for the specific language governing permissions and
+# limitations under the License.
+#
+
+# Persistent tidebuilder worker used by the tidesdk-maven-plugin builder daemon.
+#
+# Usage: python tidebuilder_worker.py <path to tidebuilder.py>
+#
+# Reads one JSON request per line from stdin:
+#   {"id": 1, "args": [...], "out": <port>, "err": <port>, "cwd": "<directory>"}
+# runs tidebuilder.py in this interpreter with those arguments and its stdout and stderr
+# connected to the given loopback ports, where the plugin streams them into the build log as
+# they are written, then answers on the original stdout with
+#   {"id": 1, "exit": <exit code>}
+# The worker exits when stdin is closed or on {"shutdown": true}. Modules imported by the
+# builder stay loaded between requests, which is where the time is saved.
+
+import json
+import os
+import runpy
+import socket
+import sys
+import traceback
+
+
+def connect(port):
+	return socket.create_connection(('127.0.0.1', int(port)))
+
+
+def disconnect(connection):
+	try:
+		connection.shutdown(socket.SHUT_RDWR)
+	except socket.error:
+		pass
+	connection.close()
+
+
+def run(script, request, idle_out, idle_err):
+	out_connection = connect(request['out'])
+	err_connection = connect(request['err'])
+	out, err = out_connection.fileno(), err_connection.fileno()
+	argv, cwd = sys.argv, os.getcwd()
+	sys.stdout.flush()
+	sys.stderr.flush()
+	os.dup2(out, 1)
+	os.dup2(err, 2)
+	code = 0
+	try:
+		sys.argv = [script] + list(request.get('args', []))
+		if request.get('cwd'):
+			os.chdir(request['cwd'])
+		runpy.run_path(script, run_name='__main__')
+	except SystemExit:
+		status = sys.exc_info()[1].code
+		if status is None:
+			code = 0
+		elif isinstance(status, int):
+			code = status
+		else:
+			sys.stderr.write(str(status) + '\n')
+			code = 1
+	except Exception:
+		traceback.print_exc()
+		code = 1
+	finally:
+		sys.stdout.flush()
+		sys.stderr.flush()
+		os.dup2(idle_out, 1)
+		os.dup2(idle_err, 2)
+		disconnect(out_connection)
+		disconnect(err_connection)
+		sys.argv = argv
+		os.chdir(cwd)
+	return code
+
+
+def main():
+	script = os.path.abspath(sys.argv[1])
+	sys.path.insert(0, os.path.dirname(script))
+
+	protocol = os.fdopen(os.dup(1), 'w')
+	idle_out = os.open(os.devnull, os.O_WRONLY)
+	idle_err = os.dup(2)
+	os.dup2(idle_out, 1)
+
+	protocol.write(json.dumps({'ready': True}) + '\n')
+	protocol.flush()
+	while True:
+		line = sys.stdin.readline()
+		if not line:
+			break
+		request = json.loads(line)
+		if request.get('shutdown'):
+			break
+		code = run(script, request, idle_out, idle_err)
+		protocol.write(json.dumps({'id': request['id'], 'exit': code}) + '\n')
+		protocol.flush()
+
+
+if __name__ == '__main__':
+	main()
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2014 Computing Distribution Group Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/*
+ * Loader for resources packed by the tidesdk-maven-plugin. The pack and index names are read
+ * from the tidepack.* properties registered in tiapp.xml. Include this script from the index
+ * page and use TidePack.read(path) for content or TidePack.url(path) for a loadable URL; entries
+ * are extracted once per pack into the application data directory.
+ */
+(function (global) {
+	var properties = Ti.App.getSystemProperties(),
+		resources = Ti.Filesystem.getResourcesDirectory(),
+		packName = properties.getString('tidepack.pack', 'resources.pack'),
+		indexName = properties.getString('tidepack.index', 'resources.idx'),
+		index = JSON.parse(Ti.Filesystem.getFile(resources, indexName).read().toString()),
+		pack = null;
+
+	// Index entries are [offset, length] in bytes. File.read() returns a Bytes blob whose substr
+	// indexes the raw buffer rather than decoded characters, so the offsets can be used as they are.
+	function bytes() {
+		if (pack === null) pack = Ti.Filesystem.getFile(resources, packName).read();
+		return pack;
+	}
+
+	function entry(path) {
+		var e = index.entries[path.replace(/^app:\/\/\/?/, '').replace(/^\//, '')];
+		if (!e) throw new Error('Not packed: ' + path);
+		return e;
+	}
+
+	function read(path) {
+		var e = entry(path);
+		return bytes().substr(e[0], e[1]);
+	}
+
+	function url(path) {
+		var e = entry(path),
+			file = Ti.Filesystem.getFile(Ti.Filesystem.getApplicationDataDirectory(), 'tidepack', index.fingerprint, path);
+		if (!file.exists()) {
+			file.parent().createDirectory(true);
+			file.write(bytes().substr(e[0], e[1]));
+		}
+		return file.toURL();
+	}
+
+	global.TidePack = {
+		index: index,
+		read: read,
+		url: url
+	};
+})(this);
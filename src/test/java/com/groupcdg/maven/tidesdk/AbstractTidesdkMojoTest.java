@@ -0,0 +1,319 @@
+/*
+ * Copyright 2014 Computing Distribution Group Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.groupcdg.maven.tidesdk;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+public class AbstractTidesdkMojoTest {
+
+	private static final File WORK_DIRECTORY = new File("target/test-run");
+
+	private static final String GOAL = "test";
+
+	private AbstractTidesdkMojo mojo;
+
+
+
+	@Before
+	public void setUp() throws Exception {
+		assumeTrue(new File("/bin/sh").canExecute());
+		if(WORK_DIRECTORY.exists()) FileUtils.deleteDirectory(WORK_DIRECTORY);
+
+		mojo = mojo(WORK_DIRECTORY);
+	}
+
+
+
+	@Test
+	public void testOutputIsLogged() throws Exception {
+		mojo.run(new ProcessBuilder("/bin/sh", "-c", "echo standard; echo error >&2"), GOAL, new Metrics(GOAL));
+
+		assertThat(log(".out"), containsString("standard"));
+		assertThat(log(".err"), containsString("error"));
+	}
+
+	@Test
+	public void testFailureIsReported() throws Exception {
+		try {
+			mojo.run(new ProcessBuilder("/bin/sh", "-c", "exit 3"), GOAL, new Metrics(GOAL));
+			fail("Expected the failing process to be reported");
+		} catch (MojoExecutionException e) {
+			assertThat(e.getMessage(), containsString("exit code 3"));
+			assertThat(e.getMessage(), containsString(runLog(WORK_DIRECTORY, GOAL, ".err").getAbsolutePath()));
+		}
+		assertThat(FileUtils.readFileToString(new File(WORK_DIRECTORY, "logs/" + RunLog.INDEX)),
+				containsString("\"goal\": \"test\", \"exitCode\": 3, \"timedOut\": false"));
+	}
+
+	@Test(timeout = 60000)
+	public void testLogsAreRotatedAndRetained() throws Exception {
+		mojo.setLogSegmentSize(1);
+		mojo.setLogRetention(2);
+		mojo.run(new ProcessBuilder("/bin/sh", "-c", "yes 0123456789abcdef | head -n 100000"), GOAL, new Metrics(GOAL));
+		File out = runLog(WORK_DIRECTORY, GOAL, ".out");
+		File segment = new File(out.getPath() + ".1.gz");
+		assertTrue(segment.isFile());
+		assertTrue(segment.length() < out.length());
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(segment))))) {
+			assertEquals("0123456789abcdef", reader.readLine());
+		}
+
+		mojo.run(new ProcessBuilder("/bin/sh", "-c", "echo second"), GOAL, new Metrics(GOAL));
+		mojo.run(new ProcessBuilder("/bin/sh", "-c", "echo third"), GOAL, new Metrics(GOAL));
+		assertEquals(2, FileUtils.readLines(new File(WORK_DIRECTORY, "logs/" + RunLog.INDEX)).size());
+		assertFalse(out.exists());
+		assertFalse(segment.exists());
+		assertEquals("third", log(".out").trim());
+	}
+
+	@Test(timeout = 60000)
+	public void testSharedLogKeepsRecentSegments() throws Exception {
+		File log = new File(WORK_DIRECTORY, "logs/builder-daemon.log");
+		FileUtils.writeStringToFile(new File(log.getPath() + ".7.gz"), "");
+		StringBuilder lines = new StringBuilder();
+		for(int i = 0; i < 1000; i++) lines.append("line ").append(i).append('\n');
+
+		OutputPump pump = new OutputPump(new ByteArrayInputStream(lines.toString().getBytes("UTF-8")), log, null, "daemon", true, 1024, 3);
+		pump.start();
+		pump.finish(30000);
+
+		List<String> segments = new ArrayList<>();
+		for(String name : log.getParentFile().list()) if(name.endsWith(".gz")) segments.add(name);
+		Collections.sort(segments);
+		assertTrue(segments.toString(), segments.size() == 3 && RunLog.lastSegment(log) > 9);
+		assertFalse(new File(log.getPath() + ".7.gz").exists());
+		assertTrue(log.length() <= 1024 + 10);
+		assertThat(FileUtils.readFileToString(log), containsString("line 999"));
+	}
+
+	@Test(timeout = 20000)
+	public void testTimeoutKillsProcess() throws Exception {
+		mojo.setTimeout(1);
+		try {
+			mojo.run(new ProcessBuilder("/bin/sh", "-c", "echo started; sleep 60"), GOAL, new Metrics(GOAL));
+			fail("Expected the hung process to be killed");
+		} catch (MojoExecutionException e) {
+			assertThat(e.getMessage(), containsString("did not finish within 1 seconds"));
+		}
+	}
+
+	@Test(timeout = 60000)
+	public void testConcurrentRunsKeepSeparateLogs() throws Exception {
+		final int modules = 8;
+		List<Thread> threads = new ArrayList<>();
+		final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+		for(int i = 0; i < modules; i++) {
+			final AbstractTidesdkMojo module = mojo(new File(WORK_DIRECTORY, "module-" + i));
+			final String goal = GOAL + i;
+			threads.add(new Thread() {
+				@Override
+				public void run() {
+					try {
+						module.run(new ProcessBuilder("/bin/sh", "-c", "i=0; while [ $i -lt 500 ]; do echo " + goal + " $i; i=$((i+1)); done"),
+								goal, new Metrics(goal));
+					} catch (Throwable t) {
+						failures.add(t);
+					}
+				}
+			});
+		}
+		for(Thread thread : threads) thread.start();
+		for(Thread thread : threads) thread.join();
+
+		assertTrue(failures.toString(), failures.isEmpty());
+		for(int i = 0; i < modules; i++) {
+			List<String> lines = FileUtils.readLines(runLog(new File(WORK_DIRECTORY, "module-" + i), GOAL + i, ".out"));
+			assertEquals(500, lines.size());
+			for(int line = 0; line < lines.size(); line++) assertEquals(GOAL + i + " " + line, lines.get(line));
+		}
+	}
+
+	@Test(timeout = 60000)
+	public void testDaemonIsReused() throws Exception {
+		File python = new File("/usr/bin/python3");
+		assumeTrue(python.canExecute());
+		File builder = new File(WORK_DIRECTORY, "tidebuilder.py");
+		FileUtils.writeStringToFile(builder, "import os, sys\n"
+				+ "print('pid %d %s' % (os.getpid(), ' '.join(sys.argv[1:])))\n"
+				+ "sys.exit(int(sys.argv[1]))\n");
+
+		try {
+			mojo.run(python.getPath(), builder.getAbsolutePath(), Arrays.asList("0", "first"), WORK_DIRECTORY, GOAL, new Metrics(GOAL));
+			String first = log(".out");
+			mojo.run(python.getPath(), builder.getAbsolutePath(), Arrays.asList("0", "second"), WORK_DIRECTORY, GOAL, new Metrics(GOAL));
+			Matcher pids = Pattern.compile("pid (\\d+) 0 first\\s+pid (\\d+) 0 second").matcher(first + log(".out"));
+			assertTrue(first + log(".out"), pids.find());
+			assertEquals(pids.group(1), pids.group(2));
+
+			try {
+				mojo.run(python.getPath(), builder.getAbsolutePath(), Arrays.asList("4"), WORK_DIRECTORY, GOAL, new Metrics(GOAL));
+				fail("Expected the failing build to be reported");
+			} catch (MojoExecutionException e) {
+				assertThat(e.getMessage(), containsString(runLog(WORK_DIRECTORY, GOAL, ".err").getAbsolutePath()));
+			}
+		} finally {
+			BuilderDaemon.shutdownAll();
+		}
+	}
+
+	@Test(timeout = 60000)
+	public void testDaemonLogsAreRotated() throws Exception {
+		File python = new File("/usr/bin/python3");
+		assumeTrue(python.canExecute());
+		File builder = new File(WORK_DIRECTORY, "tidebuilder.py");
+		FileUtils.writeStringToFile(builder, "for i in range(100000):\n"
+				+ "    print('0123456789abcdef')\n");
+		mojo.setLogSegmentSize(1);
+
+		try {
+			mojo.run(python.getPath(), builder.getAbsolutePath(), Collections.<String>emptyList(), WORK_DIRECTORY, GOAL, new Metrics(GOAL));
+			File out = runLog(WORK_DIRECTORY, GOAL, ".out");
+			File segment = new File(out.getPath() + ".1.gz");
+			assertTrue(segment.isFile());
+			assertTrue(out.length() <= 1024 * 1024 + 17);
+			try (BufferedReader reader = new BufferedReader(new InputStreamReader(new GZIPInputStream(new FileInputStream(segment))))) {
+				assertEquals("0123456789abcdef", reader.readLine());
+			}
+		} finally {
+			BuilderDaemon.shutdownAll();
+		}
+	}
+
+
+	@Test(timeout = 60000)
+	public void testDaemonOutputIsLoggedAsItHappens() throws Exception {
+		File python = new File("/usr/bin/python3");
+		assumeTrue(python.canExecute());
+		File builder = new File(WORK_DIRECTORY, "tidebuilder.py");
+		FileUtils.writeStringToFile(builder, "import time\n"
+				+ "print('started')\n"
+				+ "time.sleep(60)\n");
+		final List<String> lines = Collections.synchronizedList(new ArrayList<String>());
+		mojo.setLog(new SystemStreamLog() {
+			@Override
+			public void info(CharSequence content) {
+				lines.add(content.toString());
+			}
+		});
+		mojo.setTimeout(2);
+
+		try {
+			mojo.run(python.getPath(), builder.getAbsolutePath(), Collections.<String>emptyList(), WORK_DIRECTORY, GOAL, new Metrics(GOAL));
+			fail("Expected the hung build to be killed");
+		} catch (MojoExecutionException e) {
+			assertThat(e.getMessage(), containsString("did not finish within 2 seconds"));
+			assertTrue(lines.toString(), lines.contains("[" + GOAL + "] started"));
+		} finally {
+			BuilderDaemon.shutdownAll();
+		}
+	}
+
+	@Test(timeout = 60000)
+	public void testParallelBuildsUseSeparateDaemons() throws Exception {
+		final File python = new File("/usr/bin/python3");
+		assumeTrue(python.canExecute());
+		final File builder = new File(WORK_DIRECTORY, "tidebuilder.py");
+		FileUtils.writeStringToFile(builder, "import os, sys, time\n"
+				+ "open(sys.argv[1], 'w').close()\n"
+				+ "deadline = time.time() + 20\n"
+				+ "while not os.path.exists(sys.argv[2]) and time.time() < deadline: time.sleep(0.05)\n"
+				+ "print('pid %d %s' % (os.getpid(), os.path.exists(sys.argv[2])))\n");
+
+		final int modules = 2;
+		List<Thread> threads = new ArrayList<>();
+		final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+		for(int i = 0; i < modules; i++) {
+			final File directory = new File(WORK_DIRECTORY, "module-" + i);
+			final AbstractTidesdkMojo module = mojo(directory);
+			final List<String> args = Arrays.asList(new File(WORK_DIRECTORY, "started-" + i).getAbsolutePath(),
+					new File(WORK_DIRECTORY, "started-" + (1 - i)).getAbsolutePath());
+			threads.add(new Thread() {
+				@Override
+				public void run() {
+					try {
+						module.run(python.getPath(), builder.getAbsolutePath(), args, WORK_DIRECTORY, GOAL, new Metrics(GOAL));
+					} catch (Throwable t) {
+						failures.add(t);
+					}
+				}
+			});
+		}
+
+		try {
+			for(Thread thread : threads) thread.start();
+			for(Thread thread : threads) thread.join();
+
+			assertTrue(failures.toString(), failures.isEmpty());
+			List<String> pids = new ArrayList<>();
+			for(int i = 0; i < modules; i++) {
+				String out = FileUtils.readFileToString(runLog(new File(WORK_DIRECTORY, "module-" + i), GOAL, ".out"));
+				Matcher pid = Pattern.compile("pid (\\d+) True").matcher(out);
+				assertTrue(out, pid.find());
+				pids.add(pid.group(1));
+			}
+			assertFalse(pids.toString(), pids.get(0).equals(pids.get(1)));
+		} finally {
+			BuilderDaemon.shutdownAll();
+		}
+	}
+
+
+	private static AbstractTidesdkMojo mojo(File directory) throws Exception {
+		AbstractTidesdkMojo mojo = new AbstractTidesdkMojo() {
+			@Override
+			public void execute() {
+			}
+		};
+		Field tidesdkDirectory = AbstractTidesdkMojo.class.getDeclaredField("tidesdkDirectory");
+		tidesdkDirectory.setAccessible(true);
+		tidesdkDirectory.set(mojo, directory);
+		return mojo;
+	}
+
+	private String log(String suffix) throws Exception {
+		return FileUtils.readFileToString(runLog(WORK_DIRECTORY, GOAL, suffix));
+	}
+
+	private static File runLog(File directory, String goal, String suffix) throws Exception {
+		List<String> runs = FileUtils.readLines(new File(directory, "logs/" + RunLog.INDEX));
+		Matcher log = Pattern.compile("\"goal\": \"" + goal + "\".*\"log\": \"([^\"]+)\"").matcher(runs.get(runs.size() - 1));
+		assertTrue(runs.toString(), log.find());
+		return new File(directory, "logs/" + log.group(1) + suffix);
+	}
+}
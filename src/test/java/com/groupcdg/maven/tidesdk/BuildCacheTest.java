@@ -0,0 +1,70 @@
+/*
+ * Copyright 2014 Computing Distribution Group Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.groupcdg.maven.tidesdk;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class BuildCacheTest {
+
+	private static final File WORK_DIRECTORY = new File("target/test-build-cache");
+
+	private final File cacheDirectory = new File(WORK_DIRECTORY, "cache");
+
+	private final File bundle = new File(WORK_DIRECTORY, "bundle");
+
+
+
+	@Before
+	public void setUp() throws IOException {
+		if(WORK_DIRECTORY.exists()) FileUtils.deleteDirectory(WORK_DIRECTORY);
+		FileUtils.writeStringToFile(new File(bundle, "app/Resources/index.html"), "Bundled content");
+	}
+
+
+
+	@Test
+	public void testRestoreAfterStore() throws IOException {
+		BuildCache cache = new BuildCache(cacheDirectory, 1024 * 1024, new SystemStreamLog());
+		File restored = new File(WORK_DIRECTORY, "restored");
+
+		assertFalse(cache.restore("key", restored));
+		cache.store("key", bundle);
+		assertTrue(cache.restore("key", restored));
+		assertEquals("Bundled content", FileUtils.readFileToString(new File(restored, "app/Resources/index.html")));
+	}
+
+	@Test
+	public void testLeastRecentlyUsedEviction() throws IOException {
+		BuildCache cache = new BuildCache(cacheDirectory, 40, new SystemStreamLog());
+
+		cache.store("first", bundle);
+		new File(cacheDirectory, "first").setLastModified(System.currentTimeMillis() - 60000);
+		cache.store("second", bundle);
+		cache.store("third", bundle);
+
+		assertFalse(new File(cacheDirectory, "first").exists());
+		assertTrue(new File(cacheDirectory, "third").exists());
+	}
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2014 Computing Distribution Group Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.groupcdg.maven.tidesdk;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.filefilter.NameFileFilter;
+import org.apache.commons.io.filefilter.TrueFileFilter;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.testing.MojoRule;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.groupcdg.maven.tidesdk.TestProjects.DEFAULT_PROJECT;
+import static com.groupcdg.maven.tidesdk.TestProjects.copy;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+public class BuildMojoTest {
+
+	private static final File PROJECT = new File(TestProjects.DIRECTORY, "build");
+
+	private static final File SDK_HOME = new File(PROJECT, "target/sdk");
+
+	private static final File PYTHON = new File("/usr/bin/python3");
+
+	private static final String SDK_VERSION = "1.3.1-beta";
+
+	private static final File LOGS = new File(PROJECT, "target/tidesdk/logs");
+
+	private static final File PACKAGES = new File(PROJECT, "target/generated-sources/tidesdk/packages");
+
+	@Rule
+	public MojoRule rule = new MojoRule();
+
+
+
+	@Before
+	public void setUp() throws Exception {
+		assumeTrue(PYTHON.canExecute());
+		copy(DEFAULT_PROJECT, PROJECT.getName());
+
+		builder("linux", "import os, sys\n"
+				+ "bundle = sys.argv[sys.argv.index('-d') + 1]\n"
+				+ "open(os.path.join(bundle, 'app'), 'w').write('linux')\n"
+				+ "print('built linux bundle')\n");
+		builder("win32", "import sys\n"
+				+ "sys.stderr.write('win32 builder broke\\n')\n"
+				+ "sys.exit(2)\n");
+	}
+
+
+
+	@Test
+	public void testFailedPlatformIsReportedWithEveryLog() throws Exception {
+		BuildMojo mojo = (BuildMojo) rule.lookupConfiguredMojo(rule.readMavenProject(PROJECT), "build");
+		mojo.setSdkHome(SDK_HOME.getAbsolutePath());
+		mojo.setPythonCommand(PYTHON.getPath());
+		mojo.setPlatforms(Arrays.asList("linux", "win32"));
+		mojo.setBundleChecksums(true);
+		try {
+			mojo.execute();
+			fail("Expected the win32 build to fail");
+		} catch (MojoExecutionException e) {
+			assertEquals("Failed to build bundles for: win32", e.getMessage());
+		}
+
+		assertThat(FileUtils.readFileToString(runLog("build-linux", ".out")), containsString("built linux bundle"));
+		assertThat(FileUtils.readFileToString(runLog("build-win32", ".err")), containsString("win32 builder broke"));
+		assertEquals("linux", FileUtils.readFileToString(new File(PACKAGES, "linux/bundle/app")));
+		assertTrue(new File(PACKAGES, "linux/" + BuildMojo.BUNDLE_CHECKSUMS).isFile());
+		assertFalse(new File(PACKAGES, "win32/" + BuildMojo.BUNDLE_CHECKSUMS).exists());
+	}
+
+	@Test
+	public void testCacheMissBuildsIntoCleanDirectory() throws Exception {
+		File stale = new File(PACKAGES, "linux/bundle/stale");
+		FileUtils.writeStringToFile(stale, "previous build");
+		File cacheDirectory = new File(PROJECT, "target/build-cache");
+		BuildMojo mojo = (BuildMojo) rule.lookupConfiguredMojo(rule.readMavenProject(PROJECT), "build");
+		mojo.setSdkHome(SDK_HOME.getAbsolutePath());
+		mojo.setPythonCommand(PYTHON.getPath());
+		mojo.setPlatforms(Arrays.asList("linux"));
+		mojo.setBuildCache(true);
+		mojo.setBuildCacheDirectory(cacheDirectory);
+		mojo.execute();
+
+		assertEquals("linux", FileUtils.readFileToString(new File(PACKAGES, "linux/bundle/app")));
+		assertFalse(stale.exists());
+		assertTrue(FileUtils.listFiles(cacheDirectory, new NameFileFilter("app"), TrueFileFilter.INSTANCE).size() == 1);
+		assertTrue(FileUtils.listFiles(cacheDirectory, new NameFileFilter("stale"), TrueFileFilter.INSTANCE).isEmpty());
+	}
+
+
+
+	private static void builder(String os, String script) throws Exception {
+		FileUtils.writeStringToFile(new File(SDK_HOME, "sdk/" + os + "/" + SDK_VERSION + "/tidebuilder.py"), script);
+	}
+
+	private static File runLog(String goal, String suffix) throws Exception {
+		List<String> runs = FileUtils.readLines(new File(LOGS, RunLog.INDEX));
+		for(String run : runs) {
+			Matcher log = Pattern.compile("\"goal\": \"" + goal + "\".*\"log\": \"([^\"]+)\"").matcher(run);
+			if(log.find()) return new File(LOGS, log.group(1) + suffix);
+		}
+		fail("No " + goal + " run in " + runs);
+		return null;
+	}
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2014 Computing Distribution Group Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.groupcdg.maven.tidesdk;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.testing.MojoRule;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static com.groupcdg.maven.tidesdk.TestProjects.DEFAULT_PROJECT;
+import static com.groupcdg.maven.tidesdk.TestProjects.copy;
+import static com.groupcdg.maven.tidesdk.TestProjects.parameter;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+public class DeltaMojoTest {
+
+	private static final File PROJECT = new File(TestProjects.DIRECTORY, "delta");
+
+	private static final File DELTA_DIRECTORY = new File(PROJECT, "target/tidesdk-delta");
+
+	@Rule
+	public MojoRule rule = new MojoRule();
+
+
+
+	@Test
+	public void testDeltaAgainstPreviousRelease() throws Exception {
+		copy(DEFAULT_PROJECT, PROJECT.getName());
+
+		rule.executeMojo(rule.readMavenProject(PROJECT), "generate");
+		rule.executeMojo(rule.readMavenProject(PROJECT), "delta");
+		File resources = new File(DELTA_DIRECTORY, "resources");
+		assertThat(FileUtils.readFileToString(new File(resources, DeltaMojo.RELEASE_MANIFEST)), containsString("  Resources/css/style.css\n"));
+		File previous = new File(PROJECT, "previous");
+		FileUtils.copyDirectory(DELTA_DIRECTORY, previous);
+
+		File webapp = new File(PROJECT, "src/main/webapp");
+		FileUtils.writeStringToFile(new File(webapp, "index.html"), "Changed");
+		FileUtils.writeStringToFile(new File(webapp, "added.html"), "Added");
+		FileUtils.deleteDirectory(new File(webapp, "css"));
+		rule.executeMojo(rule.readMavenProject(PROJECT), "generate");
+		rule.executeMojo(rule.readMavenProject(PROJECT), "delta", parameter("previousRelease", previous.getAbsolutePath()));
+
+		String operations = FileUtils.readFileToString(new File(resources, DeltaMojo.APPLY_MANIFEST));
+		assertThat(operations, containsString("add " + Checksums.sha256("Added") + " 644 Resources/added.html\n"));
+		assertThat(operations, containsString(" " + Checksums.sha256("Changed") + " 644 Resources/index.html\n"));
+		assertThat(operations, containsString("delete "));
+		assertThat(operations, containsString(" Resources/css/style.css\n"));
+		assertThat(operations, not(containsString("manifest\n")));
+
+		try (ZipFile zip = new ZipFile(new File(resources, "default-1.0.0-resources-delta.zip"))) {
+			List<String> entries = new ArrayList<>();
+			for(ZipEntry entry : Collections.list(zip.entries())) entries.add(entry.getName());
+			Collections.sort(entries);
+			assertEquals("[Resources/added.html, Resources/index.html, delta.manifest]", entries.toString());
+		}
+	}
+
+
+	@Test
+	public void testDeltaKeepsModesAndLinks() throws Exception {
+		assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+		copy(DEFAULT_PROJECT, PROJECT.getName());
+
+		rule.executeMojo(rule.readMavenProject(PROJECT), "generate");
+		File bundle = new File(PROJECT, "target/generated-sources/tidesdk/packages/linux/bundle");
+		File launcher = new File(bundle, "app");
+		FileUtils.writeStringToFile(launcher, "#!/bin/sh\n");
+		Files.setPosixFilePermissions(launcher.toPath(), PosixFilePermissions.fromString("rwxr-x---"));
+		FileUtils.writeStringToFile(new File(bundle, "runtime/libkroll.so.1"), "library");
+		Files.createSymbolicLink(new File(bundle, "runtime/libkroll.so").toPath(), new File("libkroll.so.1").toPath());
+		Files.createSymbolicLink(new File(bundle, "modules").toPath(), new File("runtime").toPath());
+		FileUtils.writeStringToFile(new File(PROJECT, "target/generated-sources/tidesdk/packages/osx/bundle/app"), "osx");
+		File previous = new File(PROJECT, "previous");
+		assertTrue(previous.mkdirs());
+		rule.executeMojo(rule.readMavenProject(PROJECT), "delta", parameter("previousRelease", previous.getAbsolutePath()));
+
+		File linux = new File(DELTA_DIRECTORY, "linux");
+		String release = FileUtils.readFileToString(new File(linux, DeltaMojo.RELEASE_MANIFEST));
+		assertThat(release, containsString("#link modules\truntime\n"));
+		assertThat(release, not(containsString("modules/")));
+		assertThat(release, not(containsString("osx")));
+		String operations = FileUtils.readFileToString(new File(linux, DeltaMojo.APPLY_MANIFEST));
+		assertThat(operations, containsString("add " + Checksums.sha256("#!/bin/sh\n") + " 750 app\n"));
+		assertThat(operations, containsString("link runtime/libkroll.so\tlibkroll.so.1\n"));
+		try (CopyEngine engine = new CopyEngine(2)) {
+			assertEquals(Collections.<String>emptyList(), ReleaseManifest.load(new File(linux, DeltaMojo.RELEASE_MANIFEST))
+					.verify(Collections.singletonMap("", bundle), engine));
+		}
+		try (ZipFile zip = new ZipFile(new File(DELTA_DIRECTORY, "osx/default-1.0.0-osx-delta.zip"))) {
+			List<String> entries = new ArrayList<>();
+			for(ZipEntry entry : Collections.list(zip.entries())) entries.add(entry.getName());
+			Collections.sort(entries);
+			assertEquals("[app, delta.manifest]", entries.toString());
+		}
+	}
+
+	@Test
+	public void testDeltaRemovesBeforeSwappingFilesAndLinks() throws Exception {
+		assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+		copy(DEFAULT_PROJECT, PROJECT.getName());
+
+		File bundle = new File(PROJECT, "target/generated-sources/tidesdk/packages/linux/bundle");
+		FileUtils.writeStringToFile(new File(bundle, "runtime/libkroll.so.1"), "library");
+		FileUtils.writeStringToFile(new File(bundle, "runtime/libkroll.so"), "copy");
+		Files.createSymbolicLink(new File(bundle, "launcher").toPath(), new File("runtime/libkroll.so.1").toPath());
+		rule.executeMojo(rule.readMavenProject(PROJECT), "delta");
+		File previous = new File(PROJECT, "previous");
+		FileUtils.copyDirectory(DELTA_DIRECTORY, previous);
+
+		Files.delete(new File(bundle, "runtime/libkroll.so").toPath());
+		Files.createSymbolicLink(new File(bundle, "runtime/libkroll.so").toPath(), new File("libkroll.so.1").toPath());
+		Files.delete(new File(bundle, "launcher").toPath());
+		FileUtils.writeStringToFile(new File(bundle, "launcher"), "#!/bin/sh\n");
+		rule.executeMojo(rule.readMavenProject(PROJECT), "delta", parameter("previousRelease", previous.getAbsolutePath()));
+
+		String operations = FileUtils.readFileToString(new File(DELTA_DIRECTORY, "linux/" + DeltaMojo.APPLY_MANIFEST));
+		int delete = operations.indexOf("delete " + Checksums.sha256("copy") + " runtime/libkroll.so\n");
+		int link = operations.indexOf("link runtime/libkroll.so\tlibkroll.so.1\n");
+		int unlink = operations.indexOf("unlink launcher\n");
+		int add = operations.indexOf("add " + Checksums.sha256("#!/bin/sh\n") + " ");
+		assertTrue(operations, delete >= 0 && delete < link);
+		assertTrue(operations, unlink >= 0 && unlink < add);
+	}
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2014 Computing Distribution Group Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.groupcdg.maven.tidesdk;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FileSetMatcherTest {
+
+	private static final List<String> NONE = Collections.emptyList();
+
+
+
+	@Test
+	public void testEverythingIncludedByDefault() {
+		FileSetMatcher matcher = FileSetMatcher.compile(NONE, NONE);
+
+		assertTrue(matcher.matches("index.html"));
+		assertTrue(matcher.matches("css/deep/style.css"));
+		assertFalse(matcher.root().descend("css").isPruned());
+	}
+
+	@Test
+	public void testFileNamePatternsMatchAtAnyDepth() {
+		FileSetMatcher matcher = FileSetMatcher.compile(patterns("*.html", "*.css"), patterns("*.txt"));
+
+		assertTrue(matcher.matches("index.html"));
+		assertTrue(matcher.matches("css/style.css"));
+		assertFalse(matcher.matches("exclude.txt"));
+		assertFalse(matcher.matches("js/app.js"));
+		assertTrue(matcher.root().descend("notes.txt").isPruned());
+		assertFalse(matcher.matches("notes.txt/index.html"));
+	}
+
+	@Test
+	public void testPathPatterns() {
+		FileSetMatcher matcher = FileSetMatcher.compile(patterns("js/**/*.js", "img/?.png", "fonts/"),
+				patterns("**/test/**"));
+
+		assertTrue(matcher.matches("js/app.js"));
+		assertTrue(matcher.matches("js/lib/vendor/jquery.js"));
+		assertFalse(matcher.matches("app.js"));
+		assertFalse(matcher.matches("js/test/spec.js"));
+		assertTrue(matcher.matches("img/a.png"));
+		assertFalse(matcher.matches("img/ab.png"));
+		assertTrue(matcher.matches("fonts/sub/font.woff"));
+	}
+
+	@Test
+	public void testDirectoryPruning() {
+		FileSetMatcher matcher = FileSetMatcher.compile(patterns("js/**/*.js"), patterns("js/vendor/**"));
+		FileSetMatcher.State root = matcher.root();
+
+		assertTrue(root.descend("css").isPruned());
+		assertFalse(root.descend("js").isPruned());
+		assertFalse(root.descend("js").descend("lib").isPruned());
+		assertTrue(root.descend("js").descend("vendor").isPruned());
+	}
+
+	@Test
+	public void testBareExcludeDropsMatchingDirectories() {
+		FileSetMatcher matcher = FileSetMatcher.compile(NONE, patterns("vendor"));
+
+		assertTrue(matcher.root().descend("vendor").isPruned());
+		assertTrue(matcher.root().descend("js").descend("vendor").isPruned());
+		assertFalse(matcher.matches("js/vendor/jquery.js"));
+		assertFalse(matcher.matches("vendor"));
+		assertTrue(matcher.matches("js/app.js"));
+	}
+
+	@Test
+	public void testExcludedPathWithoutWildcardIsNotPruned() {
+		FileSetMatcher matcher = FileSetMatcher.compile(NONE, patterns("js/vendor"));
+
+		assertFalse(matcher.root().descend("js").descend("vendor").isPruned());
+		assertFalse(matcher.matches("js/vendor"));
+		assertTrue(matcher.matches("js/vendor/jquery.js"));
+	}
+
+
+	private List<String> patterns(String... patterns) {
+		return Arrays.asList(patterns);
+	}
+}
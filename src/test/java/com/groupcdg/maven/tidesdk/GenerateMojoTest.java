@@ -17,17 +17,46 @@
 package com.groupcdg.maven.tidesdk;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.plugin.Mojo;
 import org.apache.maven.plugin.testing.MojoRule;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.repository.internal.MavenRepositorySystemUtils;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.repository.LocalRepository;
+import org.eclipse.aether.repository.RemoteRepository;
 import org.junit.Rule;
 import org.junit.Test;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.text.DateFormat;
 import java.util.Calendar;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
-
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static com.groupcdg.maven.tidesdk.TestProjects.copy;
+import static com.groupcdg.maven.tidesdk.TestProjects.parameter;
 import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
 import static org.junit.Assert.*;
 
 public class GenerateMojoTest {
@@ -46,6 +75,8 @@ public class GenerateMojoTest {
 
 	private static final File CUSTOM_SETTINGS_PROJECT = new File("src/test/resources/unit/custom-settings");
 
+	private static final File WORK_DIRECTORY = TestProjects.DIRECTORY;
+
 	private static final String DEFAULT_ASSET_CONTENT = "Assets taken from default webapp directory";
 
 	private static final String CUSTOM_ASSET_CONTENT = "Assets taken from custom assets directory";
@@ -70,6 +101,7 @@ public class GenerateMojoTest {
 		assertIncluded(config(DEFAULT_PROJECT, "tiapp.xml"), "<name>Default Project</name>");
 		assertIncluded(asset(DEFAULT_PROJECT, "index.html"), DEFAULT_ASSET_CONTENT);
 		assertIncluded(asset(DEFAULT_PROJECT, "css/style.css"), DEFAULT_ASSET_CONTENT);
+		assertIncluded(new File(DEFAULT_PROJECT, "target/tidesdk/metrics/generate.json"), "{\"name\": \"stage\"");
 	}
 
 	@Test
@@ -86,6 +118,7 @@ public class GenerateMojoTest {
 		assertIncluded(asset(CUSTOM_RESOURCES_PROJECT, "css/style.css"), CUSTOM_ASSET_CONTENT);
 		assertIncluded(asset(CUSTOM_RESOURCES_PROJECT, "other.html"), OVERRIDEN_ASSET_CONTENT);
 		assertExcluded(asset(CUSTOM_RESOURCES_PROJECT, "excluded.txt"));
+		assertExcluded(asset(CUSTOM_RESOURCES_PROJECT, "css/vendor/theme.css"));
 	}
 
 	@Test
@@ -111,6 +144,338 @@ public class GenerateMojoTest {
 	}
 
 
+	@Test
+	public void testIncrementalGeneration() throws Exception {
+		File project = copy(DEFAULT_PROJECT, "incremental");
+		File webapp = new File(project, "src/main/webapp");
+
+		rule.executeMojo(rule.readMavenProject(project), GENERATE_GOAL, parameter("incremental", "true"));
+		assertIncluded(asset(project, "css/style.css"), DEFAULT_ASSET_CONTENT);
+
+		File index = new File(webapp, "index.html");
+		FileUtils.writeStringToFile(index, "Modified asset");
+		index.setLastModified(index.lastModified() + 2000);
+		FileUtils.writeStringToFile(new File(webapp, "added.html"), "Added asset");
+		FileUtils.deleteDirectory(new File(webapp, "css"));
+
+		rule.executeMojo(rule.readMavenProject(project), GENERATE_GOAL, parameter("incremental", "true"));
+		assertIncluded(asset(project, "index.html"), "Modified asset");
+		assertIncluded(asset(project, "added.html"), "Added asset");
+		assertExcluded(asset(project, "css/style.css"));
+		assertExcluded(asset(project, "css"));
+		assertIncluded(new File(project, "target/tidesdk/staging.manifest"), "added.html");
+	}
+
+	@Test
+	public void testIncrementalGenerationSwapsFilesAndDirectories() throws Exception {
+		File project = copy(DEFAULT_PROJECT, "incremental-swap");
+		File webapp = new File(project, "src/main/webapp");
+		FileUtils.writeStringToFile(new File(webapp, "lib"), "File asset");
+
+		rule.executeMojo(rule.readMavenProject(project), GENERATE_GOAL, parameter("incremental", "true"));
+		assertIncluded(asset(project, "lib"), "File asset");
+
+		FileUtils.deleteQuietly(new File(webapp, "lib"));
+		FileUtils.writeStringToFile(new File(webapp, "lib/lib.js"), "Nested asset");
+		FileUtils.deleteDirectory(new File(webapp, "css"));
+		FileUtils.writeStringToFile(new File(webapp, "css"), "Flattened asset");
+
+		rule.executeMojo(rule.readMavenProject(project), GENERATE_GOAL, parameter("incremental", "true"));
+		assertIncluded(asset(project, "lib/lib.js"), "Nested asset");
+		assertIncluded(asset(project, "css"), "Flattened asset");
+	}
+
+	@Test
+	public void testLinkedGeneration() throws Exception {
+		File project = copy(DEFAULT_PROJECT, "linked");
+
+		rule.executeMojo(rule.readMavenProject(project), GENERATE_GOAL, parameter("stagingStrategy", "hardlink"));
+		assertIncluded(asset(project, "index.html"), DEFAULT_ASSET_CONTENT);
+		assertTrue(Files.isSameFile(asset(project, "index.html").toPath(),
+				new File(project, "src/main/webapp/index.html").toPath()));
+
+		rule.executeMojo(rule.readMavenProject(project), GENERATE_GOAL, parameter("stagingStrategy", "transferTo"));
+		assertIncluded(asset(project, "css/style.css"), DEFAULT_ASSET_CONTENT);
+		assertFalse(Files.isSameFile(asset(project, "index.html").toPath(),
+				new File(project, "src/main/webapp/index.html").toPath()));
+	}
+
+	@Test
+	public void testReproducibleGeneration() throws Exception {
+		File project = copy(CUSTOM_SETTINGS_PROJECT, "reproducible");
+		Xpp3Dom timestamp = parameter("outputTimestamp", "2014-09-08T12:00:00Z");
+		String guid = UUID.nameUUIDFromBytes("com.groupcdg.maven.test:custom-settings".getBytes("UTF-8")).toString();
+
+		rule.executeMojo(rule.readMavenProject(project), GENERATE_GOAL, timestamp, parameter("incremental", "true"));
+		File manifest = config(project, "manifest");
+		assertIncluded(manifest, "#guid: " + guid);
+		assertIncluded(config(project, "tiapp.xml"), "<copyright>2014 Computing Distribution Group Ltd.</copyright>");
+
+		manifest.setLastModified(1000L);
+		rule.executeMojo(rule.readMavenProject(project), GENERATE_GOAL, timestamp, parameter("incremental", "true"));
+		assertEquals(1000L, manifest.lastModified());
+	}
+
+
+	@Test
+	public void testUpToDateGeneration() throws Exception {
+		File project = copy(DEFAULT_PROJECT, "up-to-date");
+		File fingerprint = new File(project, "target/tidesdk/generate.fingerprint");
+
+		rule.executeMojo(rule.readMavenProject(project), GENERATE_GOAL);
+		assertTrue(fingerprint.isFile());
+		fingerprint.setLastModified(1000L);
+		rule.executeMojo(rule.readMavenProject(project), GENERATE_GOAL);
+		assertEquals(1000L, fingerprint.lastModified());
+
+		rule.executeMojo(rule.readMavenProject(project), GENERATE_GOAL, parameter("name", "Renamed"));
+		assertTrue(fingerprint.lastModified() != 1000L);
+		assertIncluded(config(project, "tiapp.xml"), "<name>Renamed</name>");
+
+		fingerprint.setLastModified(1000L);
+		File source = new File(project, "src/main/webapp/css/style.css");
+		source.setLastModified(source.lastModified() - 10000L);
+		rule.executeMojo(rule.readMavenProject(project), GENERATE_GOAL, parameter("name", "Renamed"));
+		assertTrue(fingerprint.lastModified() != 1000L);
+
+		fingerprint.setLastModified(1000L);
+		rule.executeMojo(rule.readMavenProject(project), GENERATE_GOAL,
+				parameter("name", "Renamed"), parameter("skipIfUpToDate", "false"));
+		assertTrue(fingerprint.lastModified() != 1000L);
+	}
+
+
+	@Test
+	public void testUpToDateGenerationChecksStagedResources() throws Exception {
+		File project = copy(DEFAULT_PROJECT, "up-to-date-resources");
+		File staged = asset(project, "index.html");
+
+		rule.executeMojo(rule.readMavenProject(project), GENERATE_GOAL);
+		FileUtils.writeStringToFile(staged, "edited");
+		rule.executeMojo(rule.readMavenProject(project), GENERATE_GOAL);
+		assertIncluded(staged, DEFAULT_ASSET_CONTENT);
+
+		Files.delete(staged.toPath());
+		rule.executeMojo(rule.readMavenProject(project), GENERATE_GOAL);
+		assertIncluded(staged, DEFAULT_ASSET_CONTENT);
+	}
+
+
+	@Test
+	public void testMinifiedGeneration() throws Exception {
+		File project = copy(DEFAULT_PROJECT, "minified");
+		File script = new File(project, "src/main/webapp/js/app.js");
+		FileUtils.writeStringToFile(script, "// comment\nvar answer = 42;   /* inline */\n");
+
+		rule.executeMojo(rule.readMavenProject(project), GENERATE_GOAL, parameter("minify", "true"));
+		assertEquals("var answer=42;", FileUtils.readFileToString(asset(project, "js/app.js")));
+		assertIncluded(asset(project, "index.html"), DEFAULT_ASSET_CONTENT);
+		assertTrue(new File(project, "target/tidesdk/asset-cache").list().length > 0);
+
+		rule.executeMojo(rule.readMavenProject(project), GENERATE_GOAL,
+				parameter("minify", "false"), parameter("incremental", "true"));
+		assertThat(FileUtils.readFileToString(asset(project, "js/app.js")), containsString("// comment"));
+	}
+
+
+	@Test
+	public void testPackedGeneration() throws Exception {
+		File project = copy(DEFAULT_PROJECT, "packed");
+
+		rule.executeMojo(rule.readMavenProject(project), GENERATE_GOAL,
+				parameter("packResources", "true"), parameter("incremental", "true"));
+		assertIncluded(asset(project, "index.html"), DEFAULT_ASSET_CONTENT);
+		assertExcluded(asset(project, "css/style.css"));
+		assertIncluded(asset(project, "resources.pack"), DEFAULT_ASSET_CONTENT);
+		assertIncluded(asset(project, "resources.idx"), "\"css/style.css\": [0, ");
+		assertIncluded(asset(project, "tidepack.js"), "TidePack");
+		assertIncluded(config(project, "tiapp.xml"), "<property name='tidepack.index' type='string'>resources.idx</property>");
+
+		rule.executeMojo(rule.readMavenProject(project), GENERATE_GOAL, parameter("incremental", "true"));
+		assertIncluded(asset(project, "css/style.css"), DEFAULT_ASSET_CONTENT);
+		assertExcluded(asset(project, "resources.pack"));
+	}
+
+
+	@Test
+	public void testDescriptorConfiguration() throws Exception {
+		File project = copy(DEFAULT_PROJECT, "descriptors");
+		GenerateMojo mojo = (GenerateMojo) rule.lookupConfiguredMojo(rule.readMavenProject(project), GENERATE_GOAL);
+		mojo.setName("Tom & Jerry's <App>");
+		Display about = new Display();
+		about.setId("about");
+		about.setUrl("app://about.html?a=1&b=2");
+		about.setWidth(320);
+		mojo.setWindows(Collections.singletonList(about));
+		mojo.setExtraModules(Collections.singletonList(new RuntimeModule("python", "1.3.0")));
+		mojo.setProperties(Arrays.asList(new Property("endpoint", null, "http://example.com/?q=\"x\""),
+				new Property("retries", "int", "3")));
+		mojo.execute();
+
+		assertIncluded(config(project, "manifest"), "#appname: Tom_&_Jerry's_<App>", "\nruntime:", "\npython:1.3.0");
+		assertIncluded(config(project, "tiapp.xml"),
+				"<name>Tom &amp; Jerry&apos;s &lt;App&gt;</name>",
+				"<id>initial</id>",
+				"<title>Tom &amp; Jerry&apos;s &lt;App&gt;</title>",
+				"<url>app://index.html</url>",
+				"<id>about</id>",
+				"<url>app://about.html?a=1&amp;b=2</url>",
+				"<width>320</width>",
+				"<property name='endpoint' type='string'>http://example.com/?q=&quot;x&quot;</property>",
+				"<property name='retries' type='int'>3</property>");
+	}
+
+
+	@Test
+	public void testModuleDetection() throws Exception {
+		File project = copy(DEFAULT_PROJECT, "modules");
+		FileUtils.writeStringToFile(new File(project, "src/main/webapp/js/app.js"),
+				"var w = Ti.UI.createWindow();\nTitanium.Network.createHTTPClient();\n");
+
+		rule.executeMojo(rule.readMavenProject(project), GENERATE_GOAL, parameter("detectModules", "true"));
+		File manifest = config(project, "manifest");
+		assertIncluded(manifest, "\nruntime:", "\napp:", "\nui:", "\nnetwork:", "\nmonkey:");
+		assertThat(FileUtils.readFileToString(manifest), not(containsString("\ndatabase:")));
+		assertThat(FileUtils.readFileToString(manifest), not(containsString("\nfilesystem:")));
+
+		rule.executeMojo(rule.readMavenProject(project), GENERATE_GOAL, parameter("detectModules", "true"),
+				parameter("packResources", "true"));
+		assertIncluded(config(project, "manifest"), "\nfilesystem:");
+
+		rule.executeMojo(rule.readMavenProject(project), GENERATE_GOAL);
+		assertIncluded(config(project, "manifest"), "\ndatabase:", "\nworker:");
+	}
+
+
+	@Test
+	public void testArtifactGeneration() throws Exception {
+		File project = copy(DEFAULT_PROJECT, "artifacts");
+		File cache = new File(project, "target/artifact-cache");
+		File webjar = webjar(new File(project, "lib/jquery-2.1.1.jar"));
+		ArtifactSet jquery = jquery();
+
+		for(int i = 0; i < 2; i++) {
+			MavenProject mavenProject = rule.readMavenProject(project);
+			DefaultArtifact artifact = new DefaultArtifact("org.webjars", "jquery", "2.1.1", "compile", "jar", null,
+					new DefaultArtifactHandler("jar"));
+			artifact.setFile(webjar);
+			mavenProject.setArtifacts(Collections.<Artifact>singleton(artifact));
+			GenerateMojo mojo = (GenerateMojo) rule.lookupConfiguredMojo(mavenProject, GENERATE_GOAL);
+			mojo.setArtifactCacheDirectory(cache);
+			mojo.setArtifactSets(Collections.singletonList(jquery));
+			mojo.execute();
+		}
+
+		assertIncluded(asset(project, "lib/jquery/jquery.js"), "webjars/jquery/2.1.1/jquery.js");
+		assertExcluded(asset(project, "lib/jquery/jquery.min.map"));
+		assertIncluded(asset(project, "index.html"), DEFAULT_ASSET_CONTENT);
+		assertEquals(1, cache.list().length);
+	}
+
+
+	@Test
+	public void testArtifactResolutionFromRepository() throws Exception {
+		File project = copy(DEFAULT_PROJECT, "artifact-repository");
+		File repository = new File(project, "target/local-repository");
+		webjar(new File(repository, "org/webjars/jquery/2.1.1/jquery-2.1.1.jar"));
+		ArtifactSet jquery = jquery();
+		jquery.setVersion("2.1.1");
+
+		GenerateMojo mojo = (GenerateMojo) rule.lookupConfiguredMojo(rule.readMavenProject(project), GENERATE_GOAL);
+		RepositorySystem system = (RepositorySystem) rule.getVariableValueFromObject(mojo, "repositorySystem");
+		DefaultRepositorySystemSession session = MavenRepositorySystemUtils.newSession();
+		session.setLocalRepositoryManager(system.newLocalRepositoryManager(session, new LocalRepository(repository)));
+		rule.setVariableValueToObject(mojo, "repositorySystemSession", session);
+		rule.setVariableValueToObject(mojo, "remoteRepositories", Collections.<RemoteRepository>emptyList());
+		mojo.setArtifactCacheDirectory(new File(project, "target/artifact-cache"));
+		mojo.setArtifactSets(Collections.singletonList(jquery));
+		mojo.execute();
+
+		assertIncluded(asset(project, "lib/jquery/jquery.js"), "webjars/jquery/2.1.1/jquery.js");
+		assertExcluded(asset(project, "lib/jquery/jquery.min.map"));
+	}
+
+
+	@Test
+	public void testCollectPrunesExcludedTreesAndFollowsLinks() throws Exception {
+		File root = new File(WORK_DIRECTORY, "large-tree");
+		if(root.exists()) FileUtils.deleteDirectory(root);
+		for(int i = 0; i < 20; i++) for(int j = 0; j < 50; j++) {
+			FileUtils.touch(new File(root, "tiles/" + i + "/" + j + ".png"));
+			FileUtils.touch(new File(root, "node_modules/" + i + "/" + j + ".js"));
+		}
+		FileUtils.touch(new File(root, "shared/lib.js"));
+		Files.createSymbolicLink(new File(root, "linked").toPath(), new File(root, "shared").getAbsoluteFile().toPath());
+
+		Map<String, File> sources = new LinkedHashMap<>();
+		GenerateMojo.collect(root, "app/", FileSetMatcher.compile(Collections.<String>emptyList(),
+				Collections.singletonList("node_modules/")).root(), sources);
+		assertEquals(1002, sources.size());
+		assertEquals(new File(root, "tiles/7/42.png").getAbsoluteFile(), sources.get("app/tiles/7/42.png").getAbsoluteFile());
+		assertTrue(sources.containsKey("app/linked/lib.js"));
+		assertFalse(sources.containsKey("app/node_modules/1/1.js"));
+	}
+
+
+	@Test(timeout = 120000)
+	public void testConcurrentGeneration() throws Exception {
+		final int modules = 8, rounds = 3;
+		List<File> projects = new ArrayList<>();
+		for(int i = 0; i < modules; i++) projects.add(copy(i % 2 == 0 ? DEFAULT_PROJECT : CUSTOM_RESOURCES_PROJECT, "concurrent-" + i));
+
+		ExecutorService executor = Executors.newFixedThreadPool(modules);
+		try {
+			for(int round = 0; round < rounds; round++) {
+				List<Future<?>> executions = new ArrayList<>();
+				for(File project : projects) {
+					final Mojo mojo = rule.lookupConfiguredMojo(rule.readMavenProject(project), GENERATE_GOAL);
+					((AbstractTidesdkMojo) mojo).setIncremental(round % 2 == 1);
+					executions.add(executor.submit(new Callable<Void>() {
+						@Override
+						public Void call() throws Exception {
+							mojo.execute();
+							return null;
+						}
+					}));
+				}
+				for(Future<?> execution : executions) execution.get();
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		for(int i = 0; i < modules; i++) {
+			File project = projects.get(i);
+			assertIncluded(config(project, "manifest"), i % 2 == 0 ? "appname: Default_Project" : "appname: Custom_Resources_Project");
+			assertIncluded(asset(project, "css/style.css"), i % 2 == 0 ? DEFAULT_ASSET_CONTENT : CUSTOM_ASSET_CONTENT);
+			assertIncluded(new File(project, "target/tidesdk/metrics/generate.json"), "\"goal\": \"generate\"");
+		}
+	}
+
+
+	private File webjar(File file) throws IOException {
+		file.getParentFile().mkdirs();
+		try (ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(file))) {
+			for(String entry : new String[] { "META-INF/resources/webjars/jquery/2.1.1/jquery.js",
+					"META-INF/resources/webjars/jquery/2.1.1/jquery.min.map", "META-INF/MANIFEST.MF" }) {
+				zip.putNextEntry(new ZipEntry(entry));
+				zip.write(entry.getBytes("UTF-8"));
+				zip.closeEntry();
+			}
+		}
+		return file;
+	}
+
+	private ArtifactSet jquery() {
+		ArtifactSet jquery = new ArtifactSet();
+		jquery.setGroupId("org.webjars");
+		jquery.setArtifactId("jquery");
+		jquery.setDirectory("META-INF/resources/webjars/jquery/2.1.1");
+		jquery.setTargetPath("lib/jquery");
+		jquery.addExclude("**/*.map");
+		return jquery;
+	}
+
 	private File pom(File projectDir) {
 		return new File(projectDir, "pom.xml");
 	}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2014 Computing Distribution Group Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.groupcdg.maven.tidesdk;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class MinifierTest {
+
+	@Test
+	public void testJavaScriptKeepsLiteralsAndLineBreaks() {
+		assertEquals("var a='  // not a comment  '\nvar re=/ [/]* /g\nreturn a+ +b",
+				Minifier.minifyJs("var a = '  // not a comment  ' // comment\n\n  var re = / [/]* /g\n"
+						+ "/* block */ return a + +b"));
+		assertEquals("if(x)return/a b/.test(y)", Minifier.minifyJs("if (x) return /a b/.test(y)"));
+		assertEquals("/*! license */\nx=a/b/c", Minifier.minifyJs("/*! license */ x = a / b / c"));
+	}
+
+	@Test
+	public void testJavaScriptKeepsAmbiguousSlashes() {
+		assertEquals("if(a)/x\\/\\//.test(b)  // kept\nc()", Minifier.minifyJs("if (a) /x\\/\\//.test(b)  // kept\n  c()"));
+		assertEquals("x=(a)/ 2 /* `open\n  */ y", Minifier.minifyJs("x = (a)/ 2 /* `open\n  */ y"));
+	}
+
+	@Test
+	public void testJavaScriptKeepsUnicodeLineBreaks() {
+		assertEquals("a\nb", Minifier.minifyJs("a\u2028b"));
+		assertEquals("a\nb", Minifier.minifyJs("a // comment\u2029b"));
+		assertEquals("a\nb", Minifier.minifyJs("a /* comment\r */ b"));
+		assertEquals("a\nb", Minifier.minifyJs("a /* comment\u2028 */ b"));
+	}
+
+	@Test
+	public void testCss() {
+		assertEquals("a :hover,b>c{color:red;margin:0 auto}",
+				Minifier.minifyCss("/* c */\na :hover ,\nb>c {\n  color: red;\n  margin: 0  auto;\n}\n"));
+		assertEquals("p{content:\"a  b\"}", Minifier.minifyCss("p { content: \"a  b\"; }"));
+	}
+
+	@Test
+	public void testHtml() {
+		assertEquals("<!-- kept --><p>a b\n<b>c</b></p><pre>  keep\n  this  </pre>",
+				Minifier.minifyHtml("  <!-- kept --><p>a   b\n   <b>c</b></p><pre>  keep\n  this  </pre>\n"));
+		assertEquals("<!--[if IE]>x<![endif]-->", Minifier.minifyHtml("<!--[if IE]>x<![endif]-->"));
+		assertEquals("<!-- ko if: x --><p>a</p><!-- /ko -->", Minifier.minifyHtml("<!-- ko if: x --><p>a</p><!-- /ko -->"));
+		assertEquals("<a title=\"a  >  b\"> x </a>", Minifier.minifyHtml("<a title=\"a  >  b\">  x  </a>"));
+		assertEquals("<div style=\"white-space: pre\">  a\n <div>  b  </div>  </div> c",
+				Minifier.minifyHtml("<div style=\"white-space: pre\">  a\n <div>  b  </div>  </div>   c"));
+	}
+
+	@Test
+	public void testInvalidUtf8IsLeftUntouched() {
+		byte[] latin1 = "var s = 'caf\u00e9';  // comment".getBytes(StandardCharsets.ISO_8859_1);
+		assertArrayEquals(latin1, Minifier.js.process(latin1));
+		assertEquals("var s='caf\u00e9'", new String(Minifier.js.process("var s = 'caf\u00e9'".getBytes(StandardCharsets.UTF_8)),
+				StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testPngMetadataIsStripped() throws Exception {
+		byte[] png = png(chunk("IHDR", 13), chunk("tEXt", 5), chunk("IDAT", 3), chunk("IEND", 0));
+		byte[] expected = png(chunk("IHDR", 13), chunk("IDAT", 3), chunk("IEND", 0));
+		assertArrayEquals(expected, Minifier.stripPng(png));
+		assertArrayEquals(new byte[] { 1, 2, 3 }, Minifier.stripPng(new byte[] { 1, 2, 3 }));
+	}
+
+	@Test
+	public void testForPath() {
+		assertEquals(Minifier.js, Minifier.forPath("js/app.JS"));
+		assertEquals(Minifier.html, Minifier.forPath("index.htm"));
+		assertNull(Minifier.forPath("js/jquery.min.js"));
+		assertNull(Minifier.forPath("data.js/readme"));
+	}
+
+
+	private static byte[] png(byte[]... chunks) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(new byte[] { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n' });
+		for(byte[] chunk : chunks) out.write(chunk);
+		return out.toByteArray();
+	}
+
+	private static byte[] chunk(String type, int length) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(new byte[] { 0, 0, 0, (byte) length });
+		out.write(type.getBytes(StandardCharsets.US_ASCII));
+		out.write(new byte[length + 4]);
+		return out.toByteArray();
+	}
+}
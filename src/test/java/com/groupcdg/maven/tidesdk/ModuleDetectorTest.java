@@ -0,0 +1,83 @@
+/*
+ * Copyright 2014 Computing Distribution Group Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.groupcdg.maven.tidesdk;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class ModuleDetectorTest {
+
+	private static final File WORK_DIRECTORY = new File("target/module-detector");
+
+
+
+	@Test
+	public void testDetectsReferencedNamespaces() throws Exception {
+		Set<String> used = detect("Ti.API.info('x'); Titanium . Filesystem.getFile(); var ti = Tin.Media;",
+				"<script>Ti.UI.getCurrentWindow()</script>");
+		assertEquals(new HashSet<>(Arrays.asList("runtime", "app", "monkey", "filesystem", "ui")), used);
+	}
+
+	@Test
+	public void testScansPackLoader() throws Exception {
+		ModuleDetector detector = new ModuleDetector();
+		detector.scanResource(ResourcePacker.SHIM);
+		try (CopyEngine engine = new CopyEngine(2)) {
+			assertEquals(new HashSet<>(Arrays.asList("runtime", "app", "monkey", "filesystem")),
+					detector.detect(Collections.<File>emptyList(), engine));
+		}
+	}
+
+	@Test
+	public void testComputedAccessKeepsAllModules() throws Exception {
+		assertEquals(new HashSet<>(ModuleDetector.STANDARD_MODULES), detect("Ti.UI.x(); Ti['Data' + 'base'].open();"));
+	}
+
+	@Test
+	public void testBareNamespaceKeepsAllModules() throws Exception {
+		assertEquals(new HashSet<>(ModuleDetector.STANDARD_MODULES), detect("var T = Ti; T.Database.open();"));
+		assertEquals(new HashSet<>(ModuleDetector.STANDARD_MODULES), detect("register(Titanium);"));
+	}
+
+	@Test
+	public void testAcceptsScriptsAndPages() {
+		assertTrue(ModuleDetector.accepts("js/app.JS"));
+		assertTrue(ModuleDetector.accepts("index.htm"));
+		assertFalse(ModuleDetector.accepts("css/style.css"));
+	}
+
+
+
+	private Set<String> detect(String... contents) throws Exception {
+		File[] files = new File[contents.length];
+		for(int i = 0; i < contents.length; i++) {
+			files[i] = new File(WORK_DIRECTORY, "source" + i + ".js");
+			FileUtils.writeStringToFile(files[i], contents[i]);
+		}
+		try (CopyEngine engine = new CopyEngine(2)) {
+			return new ModuleDetector().detect(Arrays.asList(files), engine);
+		}
+	}
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2014 Computing Distribution Group Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.groupcdg.maven.tidesdk;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+public class SdkResolverTest {
+
+	private static final File WORK_DIRECTORY = new File("target/sdk-resolver");
+
+	private static final File PYTHON = new File("/usr/bin/python3");
+
+	private static final AbstractTidesdkMojo.OS LINUX = AbstractTidesdkMojo.OS.linux;
+
+	private final File cache = new File(WORK_DIRECTORY, "cache.properties");
+
+	private final String sdkHome = new File(WORK_DIRECTORY, "sdk-home").getAbsolutePath();
+
+
+
+	@Before
+	public void setUp() throws Exception {
+		if(WORK_DIRECTORY.exists()) FileUtils.deleteDirectory(WORK_DIRECTORY);
+		FileUtils.writeStringToFile(new File(sdkHome, "sdk/linux/1.3.1-beta/tidebuilder.py"), "");
+		SdkResolver.clearSession();
+	}
+
+
+
+	@Test
+	public void testResolvesAndCachesInterpreter() throws Exception {
+		assumeTrue(PYTHON.canExecute());
+
+		SdkResolver.Sdk sdk = new SdkResolver(cache).resolve(LINUX, LINUX, sdkHome, "1.3.1-beta", PYTHON.getPath());
+		assertTrue(sdk.getBuilder().isFile());
+		assertEquals(PYTHON.getPath(), sdk.getPython());
+		assertTrue(sdk.getPythonVersion(), sdk.getPythonVersion().matches("\\d+\\.\\d+\\.\\d+"));
+		assertThat(FileUtils.readFileToString(cache), containsString(sdk.getPythonVersion()));
+
+		SdkResolver.clearSession();
+		assertEquals(sdk.getPythonVersion(),
+				new SdkResolver(cache).resolve(LINUX, LINUX, sdkHome, "1.3.1-beta", PYTHON.getPath()).getPythonVersion());
+	}
+
+	@Test
+	public void testPython3NeedsExplicitCommand() throws Exception {
+		File python = new File(WORK_DIRECTORY, "python");
+		try {
+			SdkResolver.checkPythonVersion(python, "3.8.10", false);
+			fail("Expected the implicit Python 3 interpreter to be rejected");
+		} catch (MojoExecutionException e) {
+			assertThat(e.getMessage(), containsString("set pythonCommand"));
+		}
+		SdkResolver.checkPythonVersion(python, "3.8.10", true);
+		SdkResolver.checkPythonVersion(python, "2.7.18", false);
+	}
+
+	@Test(timeout = 20000)
+	public void testProbeDoesNotWaitForInheritedOutput() throws Exception {
+		assumeTrue(new File("/bin/sh").canExecute());
+		File python = new File(WORK_DIRECTORY, "python");
+		FileUtils.writeStringToFile(python, "#!/bin/sh\nsleep 60 &\nprintf 2.7.18\n");
+		assumeTrue(python.setExecutable(true));
+
+		assertEquals("2.7.18",
+				new SdkResolver(cache).resolve(LINUX, LINUX, sdkHome, "1.3.1-beta", python.getAbsolutePath()).getPythonVersion());
+	}
+
+	@Test
+	public void testMissingVersionListsInstalledVersions() {
+		try {
+			new SdkResolver(cache).resolve(LINUX, LINUX, sdkHome, "1.4.0", PYTHON.getPath());
+			fail("Expected the missing SDK to be reported");
+		} catch (MojoExecutionException e) {
+			assertThat(e.getMessage(), containsString("Installed versions: [1.3.1-beta]"));
+		}
+	}
+
+	@Test
+	public void testMissingInterpreterIsReported() {
+		try {
+			new SdkResolver(cache).resolve(LINUX, LINUX, sdkHome, "1.3.1-beta", new File(WORK_DIRECTORY, "python").getAbsolutePath());
+			fail("Expected the missing interpreter to be reported");
+		} catch (MojoExecutionException e) {
+			assertThat(e.getMessage(), containsString("not found"));
+		}
+	}
+}
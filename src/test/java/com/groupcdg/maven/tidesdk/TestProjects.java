@@ -0,0 +1,51 @@
+/*
+ * Copyright 2014 Computing Distribution Group Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.groupcdg.maven.tidesdk;
+
+import org.apache.commons.io.FileUtils;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+
+import java.io.File;
+import java.io.IOException;
+
+final class TestProjects {
+
+	static final File DEFAULT_PROJECT = new File("src/test/resources/unit/default");
+
+	static final File DIRECTORY = new File("target/test-projects");
+
+
+
+	private TestProjects() {
+	}
+
+
+
+	static File copy(File projectDir, String name) throws IOException {
+		File copy = new File(DIRECTORY, name);
+		if(copy.exists()) FileUtils.deleteDirectory(copy);
+		FileUtils.copyDirectory(projectDir, copy);
+		FileUtils.deleteQuietly(new File(copy, "target"));
+		return copy;
+	}
+
+	static Xpp3Dom parameter(String name, String value) {
+		Xpp3Dom parameter = new Xpp3Dom(name);
+		parameter.setValue(value);
+		return parameter;
+	}
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2014 Computing Distribution Group Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.groupcdg.maven.tidesdk;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.testing.MojoRule;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Collections;
+
+import static com.groupcdg.maven.tidesdk.TestProjects.DEFAULT_PROJECT;
+import static com.groupcdg.maven.tidesdk.TestProjects.copy;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.Assert.*;
+
+public class VerifyMojoTest {
+
+	private static final File PROJECT = new File(TestProjects.DIRECTORY, "verify");
+
+	private static final File PLATFORM = new File(PROJECT, "target/generated-sources/tidesdk/packages/linux");
+
+	private static final File BUNDLE = new File(PLATFORM, BuildMojo.BUNDLE);
+
+	private static final File CHECKSUMS = new File(PLATFORM, BuildMojo.BUNDLE_CHECKSUMS);
+
+	@Rule
+	public MojoRule rule = new MojoRule();
+
+
+
+	@Before
+	public void setUp() throws Exception {
+		copy(DEFAULT_PROJECT, PROJECT.getName());
+
+		FileUtils.writeStringToFile(new File(BUNDLE, "Resources/index.html"), "index");
+		FileUtils.writeByteArrayToFile(new File(BUNDLE, "runtime/libkroll.so"), new byte[300 * 1024]);
+		try (CopyEngine engine = new CopyEngine(2)) {
+			ReleaseManifest.scan(Collections.singletonMap(BuildMojo.BUNDLE, BUNDLE), engine).save(CHECKSUMS);
+		}
+	}
+
+
+
+	@Test
+	public void testIntactBundleVerifies() throws Exception {
+		assertThat(FileUtils.readFileToString(CHECKSUMS), containsString("#merkle-root "));
+		rule.executeMojo(rule.readMavenProject(PROJECT), "verify");
+	}
+
+	@Test
+	public void testTamperedBundleFails() throws Exception {
+		byte[] library = new byte[300 * 1024];
+		library[150 * 1024] = 1;
+		FileUtils.writeByteArrayToFile(new File(BUNDLE, "runtime/libkroll.so"), library);
+		FileUtils.writeStringToFile(new File(BUNDLE, "Resources/extra.js"), "extra");
+		FileUtils.deleteQuietly(new File(BUNDLE, "Resources/index.html"));
+
+		assertFailure("Bundle verification failed with 3 problems");
+	}
+
+	@Test
+	public void testEditedManifestFails() throws Exception {
+		String checksums = FileUtils.readFileToString(CHECKSUMS);
+		FileUtils.writeStringToFile(CHECKSUMS, checksums.replace("  bundle/Resources/index.html\n", "  bundle/Resources/other.html\n"));
+		FileUtils.moveFile(new File(BUNDLE, "Resources/index.html"), new File(BUNDLE, "Resources/other.html"));
+
+		assertFailure("Bundle verification failed with 1 problems");
+	}
+
+	@Test
+	public void testExpectedMerkleRootIsEnforced() throws Exception {
+		String root = ReleaseManifest.load(CHECKSUMS).merkleRoot();
+		rule.executeMojo(rule.readMavenProject(PROJECT), "verify", expectedMerkleRoots("linux", root));
+
+		FileUtils.writeStringToFile(new File(BUNDLE, "Resources/index.html"), "other");
+		try (CopyEngine engine = new CopyEngine(2)) {
+			ReleaseManifest.scan(Collections.singletonMap(BuildMojo.BUNDLE, BUNDLE), engine).save(CHECKSUMS);
+		}
+		rule.executeMojo(rule.readMavenProject(PROJECT), "verify");
+		assertFailure("Bundle verification failed with 1 problems", expectedMerkleRoots("linux", root));
+		assertFailure("Bundle verification failed with 1 problems", expectedMerkleRoots("osx", root));
+	}
+
+	@Test
+	public void testMissingChecksumsFail() throws Exception {
+		FileUtils.deleteQuietly(CHECKSUMS);
+		assertFailure("run the build goal first");
+	}
+
+
+
+	private void assertFailure(String message, Xpp3Dom... parameters) throws Exception {
+		try {
+			rule.executeMojo(rule.readMavenProject(PROJECT), "verify", parameters);
+			fail("Expected verification to fail");
+		} catch (MojoExecutionException e) {
+			assertThat(e.getMessage(), containsString(message));
+		}
+	}
+
+	private static Xpp3Dom expectedMerkleRoots(String platform, String root) {
+		Xpp3Dom roots = new Xpp3Dom("expectedMerkleRoots");
+		Xpp3Dom entry = new Xpp3Dom(platform);
+		entry.setValue(root);
+		roots.addChild(entry);
+		return roots;
+	}
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2014 Computing Distribution Group Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.groupcdg.maven.tidesdk;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.model.FileSet;
+import org.apache.maven.plugin.testing.MojoRule;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.groupcdg.maven.tidesdk.TestProjects.DEFAULT_PROJECT;
+import static com.groupcdg.maven.tidesdk.TestProjects.copy;
+import static org.junit.Assert.*;
+
+public class WatchMojoTest {
+
+	private static final File PROJECT = new File(TestProjects.DIRECTORY, "watch");
+
+	private static final String ASSETS_TARGET = "target/generated-sources/tidesdk/Resources";
+
+	@Rule
+	public MojoRule rule = new MojoRule();
+
+
+
+	@Test(timeout = 60000)
+	public void testChangesArePushed() throws Exception {
+		copy(DEFAULT_PROJECT, PROJECT.getName());
+
+		final WatchMojo mojo = (WatchMojo) rule.lookupConfiguredMojo(rule.readMavenProject(PROJECT), "watch");
+		mojo.setWatchDebounce(50);
+		final AtomicReference<Exception> failure = new AtomicReference<>();
+		Thread watch = new Thread() {
+			@Override
+			public void run() {
+				try {
+					mojo.execute();
+				} catch (Exception e) {
+					failure.set(e);
+				}
+			}
+		};
+		watch.start();
+
+		File resources = new File(PROJECT, ASSETS_TARGET);
+		File tiapp = new File(PROJECT, "target/generated-sources/tidesdk/tiapp.xml");
+		File added = new File(resources, "js/added.js");
+		await(tiapp);
+		await(new File(PROJECT, "target/tidesdk/metrics/watch.json"));
+		long descriptorModified = tiapp.lastModified();
+
+		FileUtils.writeStringToFile(new File(PROJECT, "src/main/webapp/js/added.js"), "added");
+		await(added);
+		assertEquals("added", FileUtils.readFileToString(added));
+		assertEquals(descriptorModified, tiapp.lastModified());
+
+		FileUtils.deleteDirectory(new File(PROJECT, "src/main/webapp/js"));
+		while(added.exists()) Thread.sleep(50);
+
+		watch.interrupt();
+		watch.join();
+		assertNull(failure.get());
+	}
+
+	@Test(timeout = 60000)
+	public void testFileSetsSharingADirectoryAreAllWatched() throws Exception {
+		copy(DEFAULT_PROJECT, PROJECT.getName());
+
+		final WatchMojo mojo = (WatchMojo) rule.lookupConfiguredMojo(rule.readMavenProject(PROJECT), "watch");
+		mojo.setWatchDebounce(50);
+		File webapp = new File(PROJECT, "src/main/webapp");
+		mojo.setFileSets(Arrays.asList(fileSet(webapp, "fresh/**"), fileSet(webapp, "css/**")));
+		final AtomicReference<Exception> failure = new AtomicReference<>();
+		Thread watch = new Thread() {
+			@Override
+			public void run() {
+				try {
+					mojo.execute();
+				} catch (Exception e) {
+					failure.set(e);
+				}
+			}
+		};
+		watch.start();
+
+		File resources = new File(PROJECT, ASSETS_TARGET);
+		await(new File(PROJECT, "target/tidesdk/metrics/watch.json"));
+		FileUtils.writeStringToFile(new File(webapp, "fresh/first.js"), "first");
+		await(new File(resources, "fresh/first.js"));
+		FileUtils.writeStringToFile(new File(webapp, "fresh/second.js"), "second");
+		await(new File(resources, "fresh/second.js"));
+
+		watch.interrupt();
+		watch.join();
+		assertNull(failure.get());
+	}
+
+
+	private static FileSet fileSet(File directory, String include) {
+		FileSet fileSet = new FileSet();
+		fileSet.setDirectory(directory.getAbsolutePath());
+		fileSet.addInclude(include);
+		return fileSet;
+	}
+
+	private static void await(File file) throws InterruptedException {
+		while(!file.exists()) Thread.sleep(50);
+	}
+}